@@ -0,0 +1,79 @@
+package com.mycompany.chatapp;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Per-message hot paths: construction (ID and hash), hashing, codecs and validation
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBenchmark {
+
+    static final String TEXT = "Hi Mike, can you join us for dinner tonight";
+
+    private Message message;
+    private String json;
+    private byte[] binary;
+    private Login login;
+
+    @Setup
+    public void setup() {
+        message = new Message(1, "+27718693002", TEXT);
+        json = message.toJson();
+        binary = BinaryMessageCodec.INSTANCE.encode(message);
+        login = new Login();
+    }
+
+    @Benchmark
+    public Message construct() {
+        return new Message(1, "+27718693002", TEXT);
+    }
+
+    @Benchmark
+    public String createMessageHash() {
+        return message.createMessageHash();
+    }
+
+    @Benchmark
+    public String toJson() {
+        return message.toJson();
+    }
+
+    @Benchmark
+    public Message fromJson() {
+        return Message.fromJson(json);
+    }
+
+    @Benchmark
+    public byte[] toBinary() {
+        return BinaryMessageCodec.INSTANCE.encode(message);
+    }
+
+    @Benchmark
+    public Message fromBinary() {
+        return BinaryMessageCodec.INSTANCE.decode(ByteBuffer.wrap(binary));
+    }
+
+    @Benchmark
+    public boolean checkRecipientCell() {
+        return message.checkRecipientCell();
+    }
+
+    @Benchmark
+    public boolean checkPasswordComplexity() {
+        return login.checkPasswordComplexity("Ch&&sec@ke99!");
+    }
+}
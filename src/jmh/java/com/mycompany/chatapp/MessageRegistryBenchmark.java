@@ -0,0 +1,68 @@
+package com.mycompany.chatapp;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Search and delete over sent messages (menu options 3 to 5)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageRegistryBenchmark {
+
+    @Param({"1000", "100000"})
+    public int messages;
+
+    private MessageRegistry registry;
+    private Message[] sent;
+
+    @Setup
+    public void setup() {
+        registry = new MessageRegistry();
+        sent = new Message[messages];
+        for (int i = 0; i < messages; i++) {
+            String id = MessageIdAllocator.format(i);
+            String text = "Sent message number " + i;
+            sent[i] = new Message(id, i, "+2783455" + String.format("%04d", i % 1000), text, MessageHasher.hash(id, i, text));
+            registry.addSent(sent[i]);
+        }
+    }
+
+    private Message pick() {
+        return sent[ThreadLocalRandom.current().nextInt(messages)];
+    }
+
+    @Benchmark
+    public Message searchMessageID() {
+        return registry.findSentByID(pick().getMessageID());
+    }
+
+    @Benchmark
+    public List<Message> searchMessagesByRecipient() {
+        return registry.findByRecipient(pick().getRecipient());
+    }
+
+    // Deletes by hash and re-sends the same message so the registry size stays constant
+    @Benchmark
+    public Message deleteMessageByHash() {
+        Message m = registry.removeSentByHash(pick().getMessageHash());
+        if (m != null) {
+            registry.addSent(m);
+        }
+        return m;
+    }
+}
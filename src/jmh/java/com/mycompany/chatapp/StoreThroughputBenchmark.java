@@ -0,0 +1,87 @@
+package com.mycompany.chatapp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Stores per second through the write-behind writer against one fsync per stored message
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StoreThroughputBenchmark {
+
+    static final int STORES = 1000;
+
+    @Param({"NONE", "BATCH", "RECORD"})
+    public WriteBehindWriter.Durability durability;
+
+    private Path directory;
+    private MessageLogStore store;
+    private WriteBehindWriter writer;
+    private Message[] messages;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("chatapp-store-bench");
+        store = new MessageLogStore(directory);
+        writer = new WriteBehindWriter(store, durability);
+        messages = new Message[STORES];
+        for (int i = 0; i < STORES; i++) {
+            String id = MessageIdAllocator.format(i);
+            String text = "Stored message number " + i + " for the store benchmark";
+            messages[i] = new Message(id, i, "+27834557896", text, MessageHasher.hash(id, i, text));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        writer.close();
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STORES)
+    public void writeBehind() {
+        List<CompletableFuture<Void>> pending = new ArrayList<>(STORES);
+        for (Message m : messages) {
+            pending.add(writer.write(m));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    // The old path: append and fsync on the caller's thread, one message at a time
+    @Benchmark
+    @OperationsPerInvocation(STORES)
+    public void appendAndSyncEach() throws IOException {
+        for (Message m : messages) {
+            store.append(m);
+            store.sync();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.mycompany.chatapp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Startup load of stored messages (what loadStoredMessagesFromFiles does) over generated stores
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StoredMessageLoadBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int messages;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void createFixture() throws IOException {
+        directory = Files.createTempDirectory("chatapp-load-bench");
+        MessageLogStore store = new MessageLogStore(directory);
+        for (int i = 0; i < messages; i++) {
+            String id = MessageIdAllocator.format(i);
+            String text = "Stored message number " + i + " for the load benchmark";
+            store.append(new Message(id, i, "+27834557896", text, MessageHasher.hash(id, i, text)));
+        }
+        store.sync();
+        store.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFixture() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int loadStoredMessages() throws IOException {
+        MessageLogStore store = new MessageLogStore(directory);
+        MessageRegistry registry = new MessageRegistry();
+        for (Message m : new StoredMessageLoader().load(store).getMessages()) {
+            registry.addStored(m);
+        }
+        store.close();
+        return registry.storedCount();
+    }
+}
@@ -0,0 +1,174 @@
+package com.mycompany.chatapp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Compact length-prefixed binary codec.
+// Layout: [byte version][varint messageNumber][varint length + UTF-8 bytes] for the ID,
+// recipient, message and hash, in that order. A length of 0 marks a null string and a length
+// of n + 1 marks a string of n bytes. Encoding sizes the output exactly and allocates it once.
+public final class BinaryMessageCodec implements MessageCodec {
+
+    static final byte FORMAT_ID = 2;
+    static final byte VERSION = 1;
+
+    public static final BinaryMessageCodec INSTANCE = new BinaryMessageCodec();
+
+    // Scratch space for decoding strings out of direct or mapped buffers
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[1024]);
+
+    private BinaryMessageCodec() {
+    }
+
+    @Override
+    public byte formatId() {
+        return FORMAT_ID;
+    }
+
+    @Override
+    public byte[] encode(Message message) {
+        String id = message.getMessageID();
+        String recipient = message.getRecipient();
+        String body = message.getMessage();
+        String hash = message.getMessageHash();
+        int size = 1 + varintSize(zigzag(message.getMessageNumber()))
+                + stringSize(id) + stringSize(recipient) + stringSize(body) + stringSize(hash);
+        byte[] out = new byte[size];
+        out[0] = VERSION;
+        int pos = writeVarint(out, 1, zigzag(message.getMessageNumber()));
+        pos = writeString(out, pos, id);
+        pos = writeString(out, pos, recipient);
+        pos = writeString(out, pos, body);
+        writeString(out, pos, hash);
+        return out;
+    }
+
+    @Override
+    public Message decode(ByteBuffer buffer) {
+        ByteBuffer in = buffer.slice();
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported message version: " + version);
+        }
+        int messageNumber = unzigzag(readVarint(in));
+        String id = readString(in);
+        String recipient = readString(in);
+        String body = readString(in);
+        String hash = readString(in);
+        return new Message(id, messageNumber, recipient, body, hash);
+    }
+
+    private static int stringSize(String s) {
+        if (s == null) {
+            return 1;
+        }
+        int length = utf8Length(s);
+        return varintSize(length + 1) + length;
+    }
+
+    private static int writeString(byte[] out, int pos, String s) {
+        if (s == null) {
+            return writeVarint(out, pos, 0);
+        }
+        pos = writeVarint(out, pos, utf8Length(s) + 1);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                out[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xC0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                out[pos++] = (byte) (0xF0 | (cp >> 18));
+                out[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                out[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out[pos++] = '?'; // unpaired surrogate, same replacement String.getBytes uses
+            } else {
+                out[pos++] = (byte) (0xE0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    private static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (in.hasArray()) {
+            String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return s;
+        }
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+            SCRATCH.set(scratch);
+        }
+        in.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int zigzag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    private static int unzigzag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarint(byte[] out, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
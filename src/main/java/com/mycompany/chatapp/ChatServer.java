@@ -0,0 +1,382 @@
+package com.mycompany.chatapp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+// Headless server mode: many users register, log in, send, store and query over a local socket
+// at once, each session served by its own thread. Sessions use the same rules as the Swing app:
+// the UserDirectory registers and authenticates users, messages are built by Message and sent or
+// stored through MessageService, and queries read the conversation and full-text indexes.
+//
+// Protocol: UTF-8 lines. A request is a command and its arguments separated by single spaces;
+// the last argument (message text, search words) runs to the end of the line. Every reply starts
+// with "OK" or "ERR". Query replies are "OK <n>" followed by n lines of
+// "<messageID> <recipient> <text>". Queries only return messages the session's user sent through
+// this server or that are addressed to the user's phone number; messages carry no sender, so the
+// server remembers who sent each one for as long as it runs. A reply never spans more lines than
+// announced: carriage returns and line feeds inside a field are sent as spaces, since a client's
+// line reader ends a line at either.
+//
+//   REGISTER <username> <password> <phone>
+//   LOGIN <username> <password>
+//   SEND <recipient> <text>          -> OK SENT <messageID> <messageHash>
+//   STORE <recipient> <text>         -> OK STORED <messageID> <messageHash>
+//   QUERY RECIPIENT <recipient>      latest messages to the recipient, oldest first
+//   QUERY SEARCH <words>             keyword search, newest first ("word*" matches a prefix)
+//   QUERY ID <messageID>             a sent message by ID
+//   QUERY LONGEST                    the longest sent message
+//   QUIT
+public class ChatServer implements AutoCloseable {
+
+    static final int DEFAULT_PORT = 5121;
+    static final int QUERY_LIMIT = 50;
+    // Pending connections the OS keeps while the accept loop catches up with a burst of clients
+    static final int BACKLOG = 16_384;
+
+    private final MessageRegistry registry;
+    private final MessageService service;
+    private final ConversationIndex conversations;
+    private final FullTextIndex textIndex;
+    private final MessageStatistics statistics;
+    private final Metrics metrics;
+
+    private final UserDirectory users;
+    private final Set<Socket> sessions = ConcurrentHashMap.newKeySet();
+    // User who sent or stored each message through this server, by message ID
+    private final ConcurrentMap<String, String> senders = new ConcurrentHashMap<>();
+
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private Thread acceptor;
+    private volatile boolean closed;
+
+    public ChatServer(UserDirectory users, MessageRegistry registry, MessageService service,
+            ConversationIndex conversations, FullTextIndex textIndex, MessageStatistics statistics) {
+        this.users = users;
+        this.registry = registry;
+        this.service = service;
+        this.conversations = conversations;
+        this.textIndex = textIndex;
+        this.statistics = statistics;
+        this.metrics = service.getMetrics();
+    }
+
+    // Starts listening on the loopback interface; port 0 picks a free port
+    public synchronized void start(int port) throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        executor = newSessionExecutor();
+        acceptor = new Thread(this::acceptLoop, "chat-server-accept");
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // Number of connections currently open
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        for (Socket socket : sessions) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+        if (acceptor != null) {
+            try {
+                acceptor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // One virtual thread per session where the JDK has them (Java 21+), found reflectively so the
+    // app still builds for Java 17; otherwise a cached pool of daemon platform threads
+    static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(null, r, "chat-session-" + threadNumber.incrementAndGet(), 256 * 1024);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (closed) {
+                    return;
+                }
+                continue;
+            }
+            sessions.add(socket);
+            try {
+                executor.execute(() -> serve(socket));
+            } catch (RuntimeException e) {
+                // Shutting down
+                sessions.remove(socket);
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Session session = new Session();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                long start = System.nanoTime();
+                boolean keepOpen = handle(session, line, out);
+                out.flush();
+                metrics.operation("server.request").record(start);
+                if (!keepOpen) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        } finally {
+            sessions.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    // Handles one request line; returns false when the session should end
+    boolean handle(Session session, String line, Writer out) throws IOException {
+        String[] command = line.split(" ", 2);
+        String args = command.length > 1 ? command[1] : "";
+        switch (command[0].toUpperCase(Locale.ROOT)) {
+            case "REGISTER":
+                register(args.split(" ", 3), out);
+                return true;
+            case "LOGIN":
+                login(session, args.split(" ", 2), out);
+                return true;
+            case "SEND":
+            case "STORE":
+                if (session.user == null) {
+                    reply(out, "ERR Please log in first.");
+                } else {
+                    submit(session, command[0].equalsIgnoreCase("STORE"), args.split(" ", 2), out);
+                }
+                return true;
+            case "QUERY":
+                if (session.user == null) {
+                    reply(out, "ERR Please log in first.");
+                } else {
+                    query(session, args.split(" ", 2), out);
+                }
+                return true;
+            case "QUIT":
+                reply(out, "OK Goodbye.");
+                return false;
+            default:
+                reply(out, "ERR Unknown command: " + command[0]);
+                return true;
+        }
+    }
+
+    private void register(String[] args, Writer out) throws IOException {
+        if (args.length < 3) {
+            reply(out, "ERR Usage: REGISTER <username> <password> <phone>");
+            return;
+        }
+        ValidationCode code = users.register(args[0], args[1], args[2]);
+        if (code == ValidationCode.OK) {
+            reply(out, "OK User has been successfully registered.");
+        } else {
+            reply(out, "ERR " + Validators.describeRegistrationFailure(code));
+        }
+    }
+
+    private void login(Session session, String[] args, Writer out) throws IOException {
+        if (args.length == 2 && users.authenticate(args[0], args[1])) {
+            session.user = args[0];
+            session.phone = RecipientNumber.encode(users.getPhoneNumber(args[0]));
+            reply(out, "OK Welcome " + args[0] + ", it is great to see you again.");
+        } else {
+            reply(out, "ERR Username or password incorrect, please try again.");
+        }
+    }
+
+    private void submit(Session session, boolean persist, String[] args, Writer out) throws IOException {
+        if (args.length < 2 || args[1].isEmpty()) {
+            reply(out, "ERR Usage: " + (persist ? "STORE" : "SEND") + " <recipient> <text>");
+            return;
+        }
+        Message message = new Message(++session.messageNumber, args[0], args[1]);
+        List<MessageService.SendResult> results = (persist ? service.store(List.of(message)) : service.send(List.of(message))).join();
+        MessageService.SendResult result = results.get(0);
+        if (result.isSuccess()) {
+            senders.put(message.getMessageID(), session.user);
+            reply(out, "OK " + result.getStatus() + " " + message.getMessageID() + " " + message.getMessageHash());
+        } else {
+            reply(out, "ERR " + result.getStatus() + " " + result.getDetail());
+        }
+    }
+
+    private void query(Session session, String[] args, Writer out) throws IOException {
+        String what = args[0].toUpperCase(Locale.ROOT);
+        String arg = args.length > 1 ? args[1].trim() : "";
+        Predicate<Message> visible = m -> visibleTo(session, m);
+        long start = System.nanoTime();
+        List<Message> found;
+        switch (what) {
+            case "RECIPIENT":
+                found = conversation(arg, visible);
+                break;
+            case "SEARCH":
+                found = textIndex.search(arg, QUERY_LIMIT, visible);
+                break;
+            case "ID": {
+                Message m = registry.findSentByID(arg);
+                found = m == null || !visible.test(m) ? List.of() : List.of(m);
+                break;
+            }
+            case "LONGEST": {
+                Message m = statistics.longest(MessageRegistry.Kind.SENT, visible);
+                found = m == null ? List.of() : List.of(m);
+                break;
+            }
+            default:
+                reply(out, "ERR Unknown query: " + args[0]);
+                return;
+        }
+        metrics.operation("server.query." + what.toLowerCase(Locale.ROOT)).record(start);
+        StringBuilder sb = new StringBuilder("OK ").append(found.size()).append('\n');
+        try {
+            for (Message m : found) {
+                sb.append(oneLine(m.getMessageID() + ' ' + m.getRecipient() + ' ' + m.getMessage())).append('\n');
+            }
+        } catch (UncheckedIOException e) {
+            reply(out, "ERR " + e.getMessage());
+            return;
+        }
+        out.write(sb.toString());
+    }
+
+    // The latest messages to the recipient that pass the filter, oldest first
+    private List<Message> conversation(String recipient, Predicate<Message> visible) {
+        List<Message> newestFirst = new ArrayList<>();
+        long before = Long.MAX_VALUE;
+        while (newestFirst.size() < QUERY_LIMIT) {
+            MessageRegistry.Page page = conversations.before(recipient, before, QUERY_LIMIT);
+            List<Message> messages = page.getMessages();
+            for (int i = messages.size() - 1; i >= 0 && newestFirst.size() < QUERY_LIMIT; i--) {
+                if (visible.test(messages.get(i))) {
+                    newestFirst.add(messages.get(i));
+                }
+            }
+            if (!page.hasMore()) {
+                break;
+            }
+            before = page.getFirstSequence();
+        }
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    // A session sees what its user sent through this server and what was addressed to the user
+    private boolean visibleTo(Session session, Message m) {
+        return (session.phone != RecipientNumber.NONE && m.getRecipientNumber() == session.phone)
+                || session.user.equals(senders.get(m.getMessageID()));
+    }
+
+    private static void reply(Writer out, String line) throws IOException {
+        out.write(oneLine(line));
+        out.write('\n');
+    }
+
+    // Replaces the characters a line reader would end a line at
+    static String oneLine(String text) {
+        return text.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    // State of one connection
+    static final class Session {
+        String user;
+        long phone = RecipientNumber.NONE;
+        int messageNumber;
+    }
+
+    // Runs the server over the app's shared registry, store and indexes until the process is stopped
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        if (!Message.metrics.registerMBeans()) {
+            System.out.println(Message.metrics.getJmxFailure());
+        }
+        Login.users.load();
+        System.out.println(Message.sentJournal.recover(Message.registry));
+        try {
+            System.out.println(Message.loadStoredMessages());
+        } catch (IOException e) {
+            System.out.println("Error reading message store: " + e.getMessage());
+            return;
+        }
+        ChatServer server = new ChatServer(Login.users, Message.registry, Message.service, Message.conversations,
+                Message.textIndex, Message.statistics);
+        server.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+                Login.users.save();
+                Message.service.flush().join();
+                Message.sentJournal.sync();
+            } catch (IOException e) {
+                System.out.println("Error shutting down: " + e.getMessage());
+            }
+        }));
+        System.out.println("QuickChat server listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+    }
+}
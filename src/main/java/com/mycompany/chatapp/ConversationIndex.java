@@ -0,0 +1,160 @@
+package com.mycompany.chatapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Conversation with each recipient: sent and stored messages merged into one list ordered by
+// when they entered the registry. Each recipient owns a skip list keyed by registry sequence,
+// so paging backwards from the newest message or reading a sequence range costs
+// O(log n + page size) regardless of how many other messages exist. Recipients are keyed by
+// their RecipientNumber; String arguments are parsed once on the way in.
+public class ConversationIndex implements MessageRegistry.Listener {
+
+    private final LongHashMap<ConcurrentSkipListMap<Long, Ref>> byRecipient = new LongHashMap<>();
+
+    public ConversationIndex(MessageRegistry registry) {
+        registry.addListener(this);
+    }
+
+    // Up to limit messages to the recipient registered before the given sequence, oldest first.
+    // Start with Long.MAX_VALUE for the latest messages and pass the page's first sequence to go further back
+    public MessageRegistry.Page before(String recipient, long beforeSequence, int limit) {
+        return before(RecipientNumber.encode(recipient), beforeSequence, limit);
+    }
+
+    public MessageRegistry.Page before(long recipient, long beforeSequence, int limit) {
+        ConcurrentSkipListMap<Long, Ref> conversation = conversation(recipient);
+        if (conversation == null) {
+            return empty();
+        }
+        List<Message> newestFirst = new ArrayList<>(Math.min(limit, 1024));
+        long first = 0;
+        long last = 0;
+        for (Map.Entry<Long, Ref> entry : conversation.headMap(beforeSequence, false).descendingMap().entrySet()) {
+            if (newestFirst.size() == limit) {
+                Collections.reverse(newestFirst);
+                return new MessageRegistry.Page(newestFirst, first, last, true);
+            }
+            if (newestFirst.isEmpty()) {
+                last = entry.getKey();
+            }
+            newestFirst.add(entry.getValue().message);
+            first = entry.getKey();
+        }
+        Collections.reverse(newestFirst);
+        return new MessageRegistry.Page(newestFirst, first, last, false);
+    }
+
+    // Up to limit messages to the recipient registered after the given sequence, oldest first
+    public MessageRegistry.Page after(String recipient, long afterSequence, int limit) {
+        ConcurrentSkipListMap<Long, Ref> conversation = conversation(RecipientNumber.encode(recipient));
+        if (conversation == null) {
+            return empty();
+        }
+        return page(conversation.tailMap(afterSequence, false), limit);
+    }
+
+    // Messages to the recipient with sequences in [fromSequence, toSequence), oldest first
+    public List<Message> range(String recipient, long fromSequence, long toSequence) {
+        ConcurrentSkipListMap<Long, Ref> conversation = conversation(RecipientNumber.encode(recipient));
+        if (conversation == null || fromSequence >= toSequence) {
+            return new ArrayList<>();
+        }
+        List<Message> messages = new ArrayList<>();
+        for (Ref ref : conversation.subMap(fromSequence, true, toSequence, false).values()) {
+            messages.add(ref.message);
+        }
+        return messages;
+    }
+
+    // Number of messages in the conversation; counting walks the recipient's list only
+    public int count(String recipient) {
+        return count(RecipientNumber.encode(recipient));
+    }
+
+    public int count(long recipient) {
+        ConcurrentSkipListMap<Long, Ref> conversation = conversation(recipient);
+        return conversation == null ? 0 : conversation.size();
+    }
+
+    @Override
+    public void added(MessageRegistry.Kind kind, Message message, long sequence) {
+        if (message.getRecipientNumber() == RecipientNumber.NONE) {
+            return;
+        }
+        byRecipient.compute(message.getRecipientNumber(), conversation -> {
+            if (conversation == null) {
+                conversation = new ConcurrentSkipListMap<>();
+            }
+            conversation.put(sequence, new Ref(kind, message));
+            return conversation;
+        });
+    }
+
+    @Override
+    public void removed(MessageRegistry.Kind kind, Message message, long sequence) {
+        if (message.getRecipientNumber() == RecipientNumber.NONE) {
+            return;
+        }
+        byRecipient.compute(message.getRecipientNumber(), conversation -> {
+            if (conversation == null) {
+                return null;
+            }
+            conversation.remove(sequence);
+            return conversation.isEmpty() ? null : conversation;
+        });
+    }
+
+    @Override
+    public void cleared(MessageRegistry.Kind kind) {
+        for (long recipient : byRecipient.keys()) {
+            byRecipient.compute(recipient, conversation -> {
+                if (conversation == null) {
+                    return null;
+                }
+                conversation.values().removeIf(ref -> ref.kind == kind);
+                return conversation.isEmpty() ? null : conversation;
+            });
+        }
+    }
+
+    private ConcurrentSkipListMap<Long, Ref> conversation(long recipient) {
+        return recipient == RecipientNumber.NONE ? null : byRecipient.get(recipient);
+    }
+
+    private static MessageRegistry.Page page(NavigableMap<Long, Ref> from, int limit) {
+        List<Message> messages = new ArrayList<>(Math.min(limit, 1024));
+        long first = 0;
+        long last = 0;
+        for (Map.Entry<Long, Ref> entry : from.entrySet()) {
+            if (messages.size() == limit) {
+                return new MessageRegistry.Page(messages, first, last, true);
+            }
+            if (messages.isEmpty()) {
+                first = entry.getKey();
+            }
+            messages.add(entry.getValue().message);
+            last = entry.getKey();
+        }
+        return new MessageRegistry.Page(messages, first, last, false);
+    }
+
+    private static MessageRegistry.Page empty() {
+        return new MessageRegistry.Page(new ArrayList<>(), 0, 0, false);
+    }
+
+    // A message in a conversation and whether it was sent or stored
+    private static final class Ref {
+        final MessageRegistry.Kind kind;
+        final Message message;
+
+        Ref(MessageRegistry.Kind kind, Message message) {
+            this.kind = kind;
+            this.message = message;
+        }
+    }
+}
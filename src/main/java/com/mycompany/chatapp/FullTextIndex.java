@@ -0,0 +1,270 @@
+package com.mycompany.chatapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+
+// Inverted index over the words of sent and stored message bodies.
+// Words are lower-cased runs of letters and digits. Each word maps to a posting list keyed by
+// registry sequence, and a sorted copy of the dictionary turns a prefix into a contiguous
+// range of words. Queries match messages containing every word; a word ending in '*' matches any
+// word starting with it. Results come back newest first and reading stops at the limit, so a
+// query costs about the size of its answer rather than the number of messages indexed.
+public class FullTextIndex implements MessageRegistry.Listener {
+
+    // Posting lists change only inside compute on this map, which also keeps the sorted words in step
+    private final ConcurrentMap<String, Postings> postings = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<String> words = new ConcurrentSkipListSet<>();
+
+    public FullTextIndex(MessageRegistry registry) {
+        registry.addListener(this);
+    }
+
+    // Up to limit messages matching every word of the query, newest first
+    public List<Message> search(String query, int limit) {
+        return search(query, limit, m -> true);
+    }
+
+    // Like search(query, limit), but only matches the filter accepts are returned or count toward the limit
+    public List<Message> search(String query, int limit, Predicate<Message> filter) {
+        List<String> exact = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        for (String token : query == null ? new String[0] : query.trim().split("\\s+")) {
+            boolean prefix = token.endsWith("*");
+            List<String> words = tokenize(prefix ? token.substring(0, token.length() - 1) : token);
+            for (int i = 0; i < words.size(); i++) {
+                // "e-mai*" splits into "e" and "mai"; only the last word is a prefix
+                if (prefix && i == words.size() - 1) {
+                    prefixes.add(words.get(i));
+                } else {
+                    exact.add(words.get(i));
+                }
+            }
+        }
+        List<Message> hits = new ArrayList<>();
+        if (exact.isEmpty() && prefixes.isEmpty()) {
+            return hits;
+        }
+
+        // Drive from the shortest exact posting list, or merge the first prefix's lists
+        Iterator<Map.Entry<Long, Ref>> candidates;
+        if (!exact.isEmpty()) {
+            Postings shortest = null;
+            for (String word : exact) {
+                Postings list = postings.get(word);
+                if (list == null) {
+                    return hits;
+                }
+                if (shortest == null || list.size < shortest.size) {
+                    shortest = list;
+                }
+            }
+            candidates = shortest.entries.descendingMap().entrySet().iterator();
+        } else {
+            candidates = mergeNewestFirst(prefixRange(prefixes.get(0)));
+        }
+
+        while (hits.size() < limit && candidates.hasNext()) {
+            Map.Entry<Long, Ref> candidate = candidates.next();
+            if (matches(candidate.getKey(), candidate.getValue().message, exact, prefixes)
+                    && filter.test(candidate.getValue().message)) {
+                hits.add(candidate.getValue().message);
+            }
+        }
+        return hits;
+    }
+
+    // Number of distinct words in the index
+    public int termCount() {
+        return postings.size();
+    }
+
+    @Override
+    public void added(MessageRegistry.Kind kind, Message message, long sequence) {
+        Ref ref = new Ref(kind, message);
+        for (String word : termsOf(message)) {
+            postings.compute(word, (w, list) -> {
+                if (list == null) {
+                    list = new Postings();
+                    words.add(w);
+                }
+                if (list.entries.put(sequence, ref) == null) {
+                    list.size++;
+                }
+                return list;
+            });
+        }
+    }
+
+    @Override
+    public void removed(MessageRegistry.Kind kind, Message message, long sequence) {
+        for (String word : termsOf(message)) {
+            postings.computeIfPresent(word, (w, list) -> {
+                if (list.entries.remove(sequence) != null) {
+                    list.size--;
+                }
+                return drop(w, list);
+            });
+        }
+    }
+
+    @Override
+    public void cleared(MessageRegistry.Kind kind) {
+        for (String word : postings.keySet()) {
+            postings.computeIfPresent(word, (w, list) -> {
+                list.entries.values().removeIf(ref -> ref.kind == kind);
+                list.size = list.entries.size();
+                return drop(w, list);
+            });
+        }
+    }
+
+    // Distinct words of a message. Messages opened from the store manifest carry them, so indexing
+    // and removing those never reads a body from the store
+    static Collection<String> termsOf(Message message) {
+        String[] terms = message.getIndexTerms();
+        return terms != null ? Arrays.asList(terms) : new LinkedHashSet<>(tokenize(message.getMessage()));
+    }
+
+    // Splits text into lower-case words of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private boolean matches(long sequence, Message message, List<String> exact, List<String> prefixes) {
+        for (String word : exact) {
+            Postings list = postings.get(word);
+            if (list == null || !list.entries.containsKey(sequence)) {
+                return false;
+            }
+        }
+        if (prefixes.isEmpty()) {
+            return true;
+        }
+        // Checking the message's own words is cheaper than probing every word under each prefix
+        Collection<String> own = termsOf(message);
+        for (String prefix : prefixes) {
+            boolean found = false;
+            for (String word : own) {
+                if (word.startsWith(prefix)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Postings drop(String word, Postings list) {
+        if (list.size > 0) {
+            return list;
+        }
+        words.remove(word);
+        return null;
+    }
+
+    // Posting lists of every word starting with the prefix
+    private List<Postings> prefixRange(String prefix) {
+        List<Postings> lists = new ArrayList<>();
+        for (String word : words.subSet(prefix, true, prefix + Character.MAX_VALUE, false)) {
+            Postings list = postings.get(word);
+            if (list != null) {
+                lists.add(list);
+            }
+        }
+        return lists;
+    }
+
+    // K-way merge of several posting lists, highest sequence first, without copying them
+    private static Iterator<Map.Entry<Long, Ref>> mergeNewestFirst(List<Postings> lists) {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>((a, b) -> Long.compare(b.head.getKey(), a.head.getKey()));
+        for (Postings list : lists) {
+            Cursor cursor = new Cursor(list.entries.descendingMap().entrySet().iterator());
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return new Iterator<Map.Entry<Long, Ref>>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Map.Entry<Long, Ref> next() {
+                Cursor cursor = heads.poll();
+                Map.Entry<Long, Ref> entry = cursor.head;
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+                // A message holding two words with the prefix sits in both lists; skip the copies
+                while (!heads.isEmpty() && heads.peek().head.getKey().equals(entry.getKey())) {
+                    Cursor duplicate = heads.poll();
+                    if (duplicate.advance()) {
+                        heads.add(duplicate);
+                    }
+                }
+                return entry;
+            }
+        };
+    }
+
+    private static final class Cursor {
+        final Iterator<Map.Entry<Long, Ref>> iterator;
+        Map.Entry<Long, Ref> head;
+
+        Cursor(Iterator<Map.Entry<Long, Ref>> iterator) {
+            this.iterator = iterator;
+        }
+
+        boolean advance() {
+            head = iterator.hasNext() ? iterator.next() : null;
+            return head != null;
+        }
+    }
+
+    // Messages containing one word, with a count so the shortest list is found without walking it
+    private static final class Postings {
+        final ConcurrentSkipListMap<Long, Ref> entries = new ConcurrentSkipListMap<>();
+        volatile int size;
+    }
+
+    // A message in a posting list and whether it was sent or stored
+    private static final class Ref {
+        final MessageRegistry.Kind kind;
+        final Message message;
+
+        Ref(MessageRegistry.Kind kind, Message message) {
+            this.kind = kind;
+            this.message = message;
+        }
+    }
+}
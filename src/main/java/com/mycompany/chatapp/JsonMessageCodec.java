@@ -0,0 +1,125 @@
+package com.mycompany.chatapp;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// JSON codec built on Gson's streaming reader and writer. Fields are written and read by name
+// without reflection, and a single shared instance is safe to use from any thread.
+// Files written before the version field existed are read as version 1.
+public final class JsonMessageCodec implements MessageCodec {
+
+    static final byte FORMAT_ID = 1;
+    static final int VERSION = 1;
+
+    public static final JsonMessageCodec INSTANCE = new JsonMessageCodec();
+
+    private JsonMessageCodec() {
+    }
+
+    @Override
+    public byte formatId() {
+        return FORMAT_ID;
+    }
+
+    @Override
+    public byte[] encode(Message message) {
+        return toJson(message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Message decode(ByteBuffer buffer) {
+        return fromJson(StandardCharsets.UTF_8.decode(buffer.slice()).toString());
+    }
+
+    public String toJson(Message message) {
+        StringWriter out = new StringWriter(64 + message.getMessageLength());
+        try {
+            write(message, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    public Message fromJson(String json) {
+        try {
+            return read(new StringReader(json));
+        } catch (IOException e) {
+            throw new JsonParseException(e);
+        }
+    }
+
+    // Writes one message as a JSON object; the caller flushes the writer
+    public void write(Message message, Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name("version").value(VERSION);
+        writer.name("messageID").value(message.getMessageID());
+        writer.name("messageNumber").value(message.getMessageNumber());
+        writer.name("recipient").value(message.getRecipient());
+        writer.name("message").value(message.getMessage());
+        writer.name("messageHash").value(message.getMessageHash());
+        writer.endObject();
+    }
+
+    // Reads one message object; unknown fields are skipped so newer files still load
+    public Message read(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        int version = 1;
+        String messageID = null;
+        int messageNumber = 0;
+        String recipient = null;
+        String message = null;
+        String messageHash = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "version":
+                    version = reader.nextInt();
+                    break;
+                case "messageID":
+                    messageID = reader.nextString();
+                    break;
+                case "messageNumber":
+                    messageNumber = reader.nextInt();
+                    break;
+                case "recipient":
+                    recipient = reader.nextString();
+                    break;
+                case "message":
+                    message = reader.nextString();
+                    break;
+                case "messageHash":
+                    messageHash = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if (version > VERSION) {
+            throw new JsonParseException("Unsupported message version: " + version);
+        }
+        return new Message(messageID, messageNumber, recipient, message, messageHash);
+    }
+}
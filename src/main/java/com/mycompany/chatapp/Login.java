@@ -3,9 +3,16 @@ import javax.swing.JOptionPane;
 
 public class Login {
 
+    // Every registered user with a salted password hash, saved to users.dat
+    public static final UserDirectory users = new UserDirectory(java.nio.file.Paths.get(UserDirectory.FILE_NAME));
+
+    // Passwords are only ever held by the directory, as salted hashes
+    private final UserDirectory directory;
+
     private String registeredUsername;
-    private String registeredPassword;
     private String registeredPhoneNumber;
+    // What the directory said when the password was registered, null until then
+    private ValidationCode registration;
     private String loginUsername;
     private String loginPassword;
     private String name;
@@ -13,12 +20,18 @@ public class Login {
     
     // Default constructor
     public Login(){ 
+        this(users);
+    }
+
+    // Registers and logs in against the given directory instead of the saved one
+    public Login(UserDirectory directory){
+        this.directory = directory;
     }
     
     // Overloaded constructor to initialize registration and login data
-    public Login(String registeredUsername, String registeredPassword, String registeredPhoneNumber, String loginUsername, 
+    public Login(String registeredUsername, String registeredPhoneNumber, String loginUsername, 
             String loginPassword, String loginPhoneNumber, String name, String surname){
-        this.registeredPassword = registeredPassword;
+        this(users);
         this.registeredUsername = registeredUsername;
         this.registeredPhoneNumber = registeredPhoneNumber;
         this.loginUsername = loginUsername;
@@ -26,15 +39,21 @@ public class Login {
         this.name = name;
         this.surname = surname;
     }
+
+    // The original constructor, kept so existing callers still compile with their arguments in place.
+    // Passwords are no longer kept here, so registeredPassword is ignored; register it with
+    // UserDirectory.register instead.
+    @Deprecated
+    public Login(String registeredUsername, String registeredPassword, String registeredPhoneNumber, String loginUsername, 
+            String loginPassword, String loginPhoneNumber, String name, String surname){
+        this(registeredUsername, registeredPhoneNumber, loginUsername, loginPassword, loginPhoneNumber, name, surname);
+    }
     
     
         //Setters
     public void setRegisteredUsername(String registeredUsername) {
         this.registeredUsername = registeredUsername;
     }
-    public void setRegisteredPassword(String registeredPassword) {
-        this.registeredPassword = registeredPassword;
-    }
     public void setRegisteredPhoneNumber(String registeredPhoneNumber) {
         this.registeredPhoneNumber = registeredPhoneNumber;
     }
@@ -55,9 +74,6 @@ public class Login {
     public String getRegisteredUsername() {
         return registeredUsername;
     }
-    public String getRegisteredPassword() {
-        return registeredPassword;
-    }
     public String getRegisteredPhoneNumber() {
         return registeredPhoneNumber;
     }
@@ -73,8 +89,11 @@ public class Login {
     public String getSurname() {
         return surname;
     }
+    public ValidationCode getRegistration() {
+        return registration;
+    }
     
-    // Method to welcome the user and collect their registration details (username and password)
+    // Method to welcome the user and collect their registration username
     public void welcomeInput(){
         // Display a welcome message
         JOptionPane.showMessageDialog(null, "Welcome to the Chat APP!");
@@ -90,20 +109,11 @@ public class Login {
            JOptionPane.showMessageDialog(null, "username cannot be empty.");
            welcomeInput(); // Recursive call to retry
         }
-        
-        registeredPassword = JOptionPane.showInputDialog("Enter your password");
-        if (registeredPassword == null){  
-        // If the user cancels the input, exit the program
-            JOptionPane.showMessageDialog(null, "Registration cancelled.");
-            System.exit(0);   // (GeeksforGeeks, 2024)
-        }else if (registeredPassword.trim().isEmpty()) {
-        // If the password is empty, show an error message and re-prompt
-           JOptionPane.showMessageDialog(null, "Password cannot be empty.");
-           welcomeInput();
-        }
     }    
     
-    // Method to register the user and ensure the username and password meet the required criteria
+    // Method to register the user: the username must be correctly formatted, then the password is
+    // asked for until it meets the complexity rules and goes straight to the user directory, which
+    // keeps only its salted hash. Call after returnCellPhoneNumber so the number is registered too.
     public String registerUser() {
         // Check if the username is correctly formatted (must contain an underscore and be no more than 5 characters)
         if (!checkUserName()) {
@@ -117,28 +127,38 @@ public class Login {
                 System.exit(0);
             } else if (registeredUsername.trim().isEmpty()) {
                JOptionPane.showMessageDialog(null, "Username cannot be empty.");
-                registerUser(); // Retry
+                return registerUser(); // Retry
             } else if (!checkUserName()) {
                 return registerUser(); // Retry until valid
             }   
         }
         
         // Check if the password meets complexity requirements (at least 8 characters, includes uppercase, number, and special character)
-        if (!checkPasswordComplexity()) {
-            JOptionPane.showMessageDialog(null, "Password is not correctly formatted. \n" +
-                    "It must be at least 8 characters, contain a capital letter, a number, and a special character.");
-            registeredPassword = JOptionPane.showInputDialog("Input your password again");
-
-            // If the user cancels or provides an empty password, exit or re-prompt
-            if (registeredPassword == null) {
+        String password = JOptionPane.showInputDialog("Enter your password");
+        while (password == null || !checkPasswordComplexity(password)) {
+            // If the user cancels, exit; otherwise explain the rules and ask again
+            if (password == null) {
                 JOptionPane.showMessageDialog(null, "Registration cancelled.");
                 System.exit(0);
-            } else if (registeredPassword == null || registeredPassword.trim().isEmpty()) {
-               JOptionPane.showMessageDialog(null, "Password cannot be empty.");
-                registerUser();
-            } else if (!checkPasswordComplexity()) {
-                return registerUser();
-            } 
+            } else if (password.trim().isEmpty()) {
+                JOptionPane.showMessageDialog(null, "Password cannot be empty.");
+            } else {
+                JOptionPane.showMessageDialog(null, "Password is not correctly formatted. \n" +
+                        "It must be at least 8 characters, contain a capital letter, a number, and a special character.");
+            }
+            password = JOptionPane.showInputDialog("Input your password again");
+        }
+        return register(password);
+    }
+
+    // Adds the registered username and phone number with this password to the directory
+    String register(String password) {
+        registration = directory.register(registeredUsername, password, registeredPhoneNumber);
+        if (registration == ValidationCode.USERNAME_TAKEN) {
+            return "That username is already registered; log in with its password.";
+        }
+        if (!registration.isValid()) {
+            return Validators.describeRegistrationFailure(registration);
         }
         // If the registration passes all checks, return success message
         return "User has been successfully registered.";
@@ -148,35 +168,17 @@ public class Login {
     
     // Method to check if the username is correctly formatted (contains an underscore and no more than 5 characters)
     public boolean checkUserName(){
-        boolean validate = false;
-        if (registeredUsername.contains("_") && registeredUsername.length() <= 5){
-            validate = true;
-        }
-        return validate;
+        return Validators.checkUsername(registeredUsername).isValid();
     }       
     
     // Method to check if the password meets complexity requirements (at least 8 characters, uppercase, number, and special character)
-    public boolean checkPasswordComplexity(){
-        boolean validate = false;
-        if (registeredPassword.length() >= 8){
-            boolean hasUppercase = registeredPassword.matches(".*[A-Z].*");
-            boolean hasNumber = registeredPassword.matches(".*[0-9].*");
-            boolean hasSpecial = registeredPassword.matches(".*[^a-zA-Z0-9].*");
-            
-            if (hasUppercase && hasNumber && hasSpecial){
-                validate = true;
-            }
-        }
-        return validate;
+    public boolean checkPasswordComplexity(String password){
+        return Validators.checkPassword(password).isValid();
     }
     
     // Method to check if the cell phone number is correctly formatted (South African format)
     public boolean checkCellPhoneNumber(){
-        boolean validate = false;
-        if(registeredPhoneNumber.matches("^\\+27\\d{9}$")){
-            validate = true;
-        }
-        return validate;
+        return Validators.checkPhone(registeredPhoneNumber).isValid();
     }
     
     // Method to allow the user to add a cell phone number, ensuring the format is correct
@@ -205,31 +207,36 @@ public class Login {
     }
     
     // Method to handle user login by verifying the username and password entered
+    // Retries in a loop rather than by recursion, so repeated failures do not grow the stack
     public boolean loginUser(){
-        // Prompt the user for their login username
-        loginUsername = JOptionPane.showInputDialog("Login with your username");
-        if (loginUsername == null || loginUsername.trim().isEmpty()) {
-            JOptionPane.showMessageDialog(null, "Username cannot be empty.");
-            return loginUser();
-        }
-        
-        // Prompt the user for their login password
-        loginPassword = JOptionPane.showInputDialog("Login with your password"); 
-        if (loginPassword == null || loginPassword.trim().isEmpty()) {
-           JOptionPane.showMessageDialog(null, "Password cannot be empty.");
-           return loginUser();
-        }
-        
-        // Check if the entered credentials match the registered details
-        else if (loginUsername.equals(registeredUsername) &&
-        loginPassword.equals(registeredPassword)){
-            return true;// Login successful
-        }else {
+        while (true) {
+            // Prompt the user for their login username
+            loginUsername = JOptionPane.showInputDialog("Login with your username");
+            if (loginUsername == null || loginUsername.trim().isEmpty()) {
+                JOptionPane.showMessageDialog(null, "Username cannot be empty.");
+                continue;
+            }
+            
+            // Prompt the user for their login password
+            loginPassword = JOptionPane.showInputDialog("Login with your password"); 
+            if (loginPassword == null || loginPassword.trim().isEmpty()) {
+               JOptionPane.showMessageDialog(null, "Password cannot be empty.");
+               continue;
+            }
+            
+            // Checked against the password hash in the directory
+            if (checkLoginDetails()) {
+                return true;// Login successful
+            }
             JOptionPane.showMessageDialog(null, "Username or password incorrect, please try again.");
-            return loginUser(); // Retry on failure
         }
     }
     
+    // Method to check the login username and password against the user directory without prompting
+    public boolean checkLoginDetails(){
+        return directory.authenticate(loginUsername, loginPassword);
+    }
+    
     // Method to return the login status based on the success or failure of login attempt
     public String returnLoginStatus(){
         JOptionPane.showMessageDialog(null, "Follow the next steps to log-in.");
@@ -0,0 +1,156 @@
+package com.mycompany.chatapp;
+
+import java.util.Arrays;
+
+// Counts per long key, stored as two parallel primitive arrays with open addressing so
+// increments neither box nor allocate. Same probing, deletion and segmenting scheme as
+// LongHashMap: each of its SEGMENTS tables has its own monitor, and size, forEach and clear
+// visit them one at a time. A count that drops to zero removes its key. Key 0 cannot be counted.
+public class LongCounterMap {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Receives each key and its count
+    public interface EntryVisitor {
+        void visit(long key, long count);
+    }
+
+    private final Segment[] segments = new Segment[LongHashMap.SEGMENTS];
+
+    public LongCounterMap() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // Adds delta to the key's count and returns the new count
+    public long add(long key, long delta) {
+        LongHashMap.checkKey(key);
+        return segments[LongHashMap.segmentIndex(key)].add(key, delta);
+    }
+
+    public long get(long key) {
+        return segments[LongHashMap.segmentIndex(key)].get(key);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public void forEach(EntryVisitor visitor) {
+        for (Segment segment : segments) {
+            segment.forEach(visitor);
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    // One open-addressed table of counts; every method holds its monitor
+    private static final class Segment {
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private long[] counts = new long[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized long add(long key, long delta) {
+            int slot = find(key);
+            if (slot < 0) {
+                if (delta == 0) {
+                    return 0;
+                }
+                insert(key, delta);
+                return delta;
+            }
+            long count = counts[slot] + delta;
+            if (count == 0) {
+                delete(slot);
+            } else {
+                counts[slot] = count;
+            }
+            return count;
+        }
+
+        synchronized long get(long key) {
+            int slot = find(key);
+            return slot < 0 ? 0 : counts[slot];
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void forEach(EntryVisitor visitor) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    visitor.visit(keys[i], counts[i]);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            Arrays.fill(keys, 0);
+            Arrays.fill(counts, 0);
+            size = 0;
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            for (int slot = LongHashMap.mix(key) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private void insert(long key, long count) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = LongHashMap.mix(key) & mask;
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            counts[slot] = count;
+            size++;
+        }
+
+        private void delete(int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+            for (int next = (gap + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+                int home = LongHashMap.mix(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    counts[gap] = counts[next];
+                    gap = next;
+                }
+            }
+            keys[gap] = 0;
+            counts[gap] = 0;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldCounts = counts;
+            keys = new long[capacity];
+            counts = new long[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    insert(oldKeys[i], oldCounts[i]);
+                }
+            }
+        }
+    }
+}
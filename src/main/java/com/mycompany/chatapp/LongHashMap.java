@@ -0,0 +1,227 @@
+package com.mycompany.chatapp;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+// Map from long keys to objects with open addressing and linear probing, so lookups neither box
+// the key nor follow chains of entry objects. Keys live in one long[] and values in a parallel
+// Object[]; deletes shift later entries back instead of leaving tombstones.
+// Key 0 marks an empty slot and cannot be stored (RecipientNumber.NONE is never indexed).
+//
+// The map is split into SEGMENTS independent tables, picked by the top bits of the key's hash,
+// and each table has its own monitor, so threads working on different recipients rarely meet
+// (the registry's stripes would otherwise all queue on one lock here). size, keys and clear
+// visit the segments one at a time, like ConcurrentHashMap's, and are not atomic across them.
+public class LongHashMap<V> {
+
+    static final int SEGMENTS = 16;
+    private static final int SEGMENT_SHIFT = 32 - Integer.numberOfTrailingZeros(SEGMENTS);
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public LongHashMap() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) segmentFor(key).get(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        checkKey(key);
+        return (V) segmentFor(key).put(key, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        return (V) segmentFor(key).remove(key);
+    }
+
+    // Replaces the value with remap(current value or null); a null result removes the key.
+    // remap runs under the key's segment monitor, as ConcurrentHashMap.compute runs under its bin lock.
+    @SuppressWarnings("unchecked")
+    public V compute(long key, Function<V, V> remap) {
+        checkKey(key);
+        return (V) segmentFor(key).compute(key, (Function<Object, Object>) remap);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long[] keys() {
+        long[][] parts = new long[SEGMENTS][];
+        int total = 0;
+        for (int i = 0; i < SEGMENTS; i++) {
+            parts[i] = segments[i].keys();
+            total += parts[i].length;
+        }
+        long[] keys = new long[total];
+        int n = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, keys, n, part.length);
+            n += part.length;
+        }
+        return keys;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    // Spreads keys such as consecutive phone numbers across the table
+    static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Segments use the top bits of the hash and slots the bottom bits, so the two stay independent
+    static int segmentIndex(long key) {
+        return mix(key) >>> SEGMENT_SHIFT;
+    }
+
+    static void checkKey(long key) {
+        if (key == 0) {
+            throw new IllegalArgumentException("0 is reserved for empty slots");
+        }
+    }
+
+    private Segment segmentFor(long key) {
+        return segments[segmentIndex(key)];
+    }
+
+    // One open-addressed table; every method holds its monitor and the work inside is a few array reads
+    private static final class Segment {
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private Object[] values = new Object[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized Object get(long key) {
+            int slot = find(key);
+            return slot < 0 ? null : values[slot];
+        }
+
+        synchronized Object put(long key, Object value) {
+            int slot = find(key);
+            if (slot >= 0) {
+                Object old = values[slot];
+                values[slot] = value;
+                return old;
+            }
+            insert(key, value);
+            return null;
+        }
+
+        synchronized Object remove(long key) {
+            int slot = find(key);
+            if (slot < 0) {
+                return null;
+            }
+            Object old = values[slot];
+            delete(slot);
+            return old;
+        }
+
+        synchronized Object compute(long key, Function<Object, Object> remap) {
+            int slot = find(key);
+            Object updated = remap.apply(slot < 0 ? null : values[slot]);
+            if (slot >= 0) {
+                if (updated == null) {
+                    delete(slot);
+                } else {
+                    values[slot] = updated;
+                }
+            } else if (updated != null) {
+                insert(key, updated);
+            }
+            return updated;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long[] keys() {
+            long[] copy = new long[size];
+            int n = 0;
+            for (long key : keys) {
+                if (key != 0) {
+                    copy[n++] = key;
+                }
+            }
+            return copy;
+        }
+
+        synchronized void clear() {
+            Arrays.fill(keys, 0);
+            Arrays.fill(values, null);
+            size = 0;
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private void insert(long key, Object value) {
+            // Keep the load factor at or below one half so probe runs stay short
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        }
+
+        // Backward-shift deletion: move later entries of the probe run into the gap if their home allows
+        private void delete(int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+            for (int next = (gap + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+                int home = mix(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+            }
+            keys[gap] = 0;
+            values[gap] = null;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[capacity];
+            values = new Object[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+    }
+}
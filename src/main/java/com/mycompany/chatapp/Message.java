@@ -1,60 +1,134 @@
 package com.mycompany.chatapp;
 
-import java.util.Random;
 import javax.swing.JOptionPane;
+import javax.swing.JTextArea;
+import java.awt.Font;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import com.google.gson.Gson;
-
-import java.util.*;
-import com.google.gson.reflect.TypeToken;
-import java.io.*;
-import java.lang.reflect.Type;
-
-import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.FileReader;
-import java.io.File;
-import java.io.BufferedReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.concurrent.CompletableFuture;
 
 
 public final class Message {
     
-    // Static variables to track messages and arrays
-    public static int totalMessagesSent = 0;
-    public static List<Message> messageList = new ArrayList<>();
+    // Sent, stored and disregarded messages with indexes by ID, hash and recipient.
+    // The registry is thread-safe and also keeps the total sent count (registry.totalSent())
+    public static final MessageRegistry registry = new MessageRegistry(new MessageArena());
+
+    // Unique message IDs, persisted so they are not reused after a restart
+    // (the chatapp.idFile system property moves the mark, so test runs keep it out of the working directory)
+    public static final MessageIdAllocator idAllocator = new MessageIdAllocator(
+            java.nio.file.Paths.get(System.getProperty("chatapp.idFile", "message_id.hwm")));
+
+    // Segmented append-only log that holds messages stored to send later
+    public static final MessageLogStore messageStore = new MessageLogStore(java.nio.file.Paths.get("message_store"));
+
+    // Write-ahead log and snapshots that bring sent messages back after a restart
+    public static final SentMessageJournal sentJournal = new SentMessageJournal(java.nio.file.Paths.get("sent_journal"));
+
+    // Worker pipeline that validates, registers and persists messages; the menus below are its Swing client
+    public static final MessageService service = new MessageService(registry, messageStore);
+
+    // Stores message_<id>.json files dropped into the working directory while the app runs
+    public static final StoredMessageWatcher storedWatcher = new StoredMessageWatcher(java.nio.file.Paths.get("."), service);
+
+    // Counts and latency histograms for sends, stores, loads and menu queries (also published over JMX)
+    public static final Metrics metrics = service.getMetrics();
+
+    // Longest messages, per-recipient counts and length histogram, kept current as messages change
+    public static final MessageStatistics statistics = new MessageStatistics(registry);
 
-    // POE arrays
-    public static List<Message> sentMessages = new ArrayList<>();
-    public static List<Message> disregardedMessages = new ArrayList<>();
-    public static List<Message> storedMessages = new ArrayList<>();
-    public static List<String> messageHashes = new ArrayList<>();
-    public static List<String> messageIDs = new ArrayList<>();
+    // Sent and stored messages per recipient in the order they happened
+    public static final ConversationIndex conversations = new ConversationIndex(registry);
+
+    // Messages shown by a recipient search, newest last
+    static final int CONVERSATION_PAGE_SIZE = 50;
+
+    // Word and prefix search over sent and stored message text
+    public static final FullTextIndex textIndex = new FullTextIndex(registry);
+
+    // Most matches shown by a keyword search
+    static final int SEARCH_RESULT_LIMIT = 20;
+
+    // Streams sent-message reports to the paged dialogs and to export files
+    public static final MessageReport reports = new MessageReport(registry);
+
+    // Rows shown on each page of a report dialog
+    static final int REPORT_PAGE_SIZE = 10;
 
     private final String messageID;
     private final int messageNumber;
-    private final String recipient;
-    private final String message;
+    // Parsed once into a long (see RecipientNumber); getRecipient() rebuilds the String
+    private final long recipientNumber;
+    // The recipient as given when it is not a valid number, so it can still be shown and reported
+    private final String invalidRecipient;
+    // Null until first read for messages opened from the store manifest, which load it from bodySource,
+    // and while the text is kept in arena
+    private volatile String message;
+    private final MessageLogStore bodySource;
+    // Set while the registry keeps the text in its arena instead of in message; see retainIn
+    private volatile MessageArena arena;
+    private long arenaHandle;
+    // Length and distinct words of a body left on disk, so the indexes never have to read it
+    private final int messageLength;
+    private final String[] terms;
     private final String messageHash;
     
 
     // Constructor initializes the message and generates ID and hash
     public Message(int messageNumber, String recipient, String message) {
         this.messageNumber = messageNumber;
-        this.recipient = recipient;
+        this.recipientNumber = RecipientNumber.encode(recipient);
+        this.invalidRecipient = recipientNumber == RecipientNumber.NONE ? recipient : null;
         this.message = message;
+        this.bodySource = null;
+        this.messageLength = 0;
+        this.terms = null;
         this.messageID = generateMessageID();
         this.messageHash = createMessageHash();
     }
 
-    // Generates a random 10-digit message ID as a String
+    // Rebuilds a message that was saved earlier, keeping its original ID and hash
+    Message(String messageID, int messageNumber, String recipient, String message, String messageHash) {
+        this.messageID = messageID;
+        this.messageNumber = messageNumber;
+        this.recipientNumber = RecipientNumber.encode(recipient);
+        this.invalidRecipient = recipientNumber == RecipientNumber.NONE ? recipient : null;
+        this.message = message;
+        this.bodySource = null;
+        this.messageLength = 0;
+        this.terms = null;
+        this.messageHash = messageHash;
+    }
+
+    // A stored message known only from the store manifest; its text is read from the store when first needed
+    Message(String messageID, int messageNumber, String recipient, String messageHash, int messageLength,
+            String[] terms, MessageLogStore bodySource) {
+        this.messageID = messageID;
+        this.messageNumber = messageNumber;
+        this.recipientNumber = RecipientNumber.encode(recipient);
+        this.invalidRecipient = recipientNumber == RecipientNumber.NONE ? recipient : null;
+        this.bodySource = bodySource;
+        this.messageLength = messageLength;
+        this.terms = terms;
+        this.messageHash = messageHash;
+    }
+
+    // Allocates a unique 10-digit message ID, skipping any ID already used by a loaded message
     private String generateMessageID() {
-        Random random = new Random();
-        StringBuilder sb = new StringBuilder();
-        for(int i=0; i<10; i++) {
-            sb.append(random.nextInt(10)); // append digit 0-9
-        }
-        return sb.toString();
+        String id;
+        do {
+            id = idAllocator.nextId();
+        } while (registry.containsMessageID(id));
+        return id;
     }
 
     // Checks that the message ID is not null and exactly 10 digits
@@ -62,34 +136,98 @@ public final class Message {
         return messageID != null && messageID.length() == 10;
     }
 
-    // Validates the recipient phone number: must be <=13 characters and start with '+'
+    // Validates the recipient phone number; the check itself ran once when the number was parsed
     public boolean checkRecipientCell() {
-        return recipient != null && recipient.matches("\\+27\\d{9}");
+        return RecipientNumber.isValid(recipientNumber);
     }
 
     // Creates a hash representation of the message using ID, number, and content
     public String createMessageHash() {
-        String firstTwo = messageID.substring(0, 2);
-        String[] words = message.trim().split("\\s+");
-        String firstWord = words.length > 0 ? words[0].toUpperCase() : "";
-        String lastWord = words.length > 1 ? words[words.length - 1].toUpperCase() : firstWord;
-        return firstTwo + ":" + messageNumber + ":" + firstWord + lastWord;
+        return MessageHasher.hash(messageID, messageNumber, getMessage());
+    }
+
+    // A copy of this message carrying the recomputed hash, for repairing a stale one
+    Message withRecomputedHash() {
+        return new Message(messageID, messageNumber, getRecipient(), getMessage(), createMessageHash());
     }
 
     // Returns a formatted String with message details
     public String printMessage() {
         return "Message ID: " + messageID +
                 "\nMessage Hash: " + messageHash +
-                "\nRecipient: " + recipient +
-                "\nMessage: " + message;
+                "\nRecipient: " + getRecipient() +
+                "\nMessage: " + getMessage();
     }
 
     // Getter methods
     public String getMessage() {
-        return message;
+        String text = message;
+        if (text != null) {
+            return text;
+        }
+        MessageArena retained = arena;
+        if (retained != null) {
+            text = retained.body(arenaHandle);
+            if (text != null) {
+                return text;
+            }
+        }
+        // Released from the arena meanwhile; release() puts the text back before freeing the entry
+        text = message;
+        if (text == null && bodySource != null) {
+            try {
+                text = bodySource.readBody(messageID);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read stored message " + messageID, e);
+            }
+            message = text;
+        }
+        return text;
+    }
+    // Length of the text in characters, without reading a body that is still on disk
+    public int getMessageLength() {
+        String text = message;
+        if (text == null && arena != null) {
+            text = getMessage();
+        }
+        return text != null ? text.length() : messageLength;
+    }
+
+    // Moves the text into the arena, leaving no String for it on this message; the registry does
+    // this for the sent messages it keeps. A message whose ID the arena cannot hold keeps its text
+    void retainIn(MessageArena target) {
+        String text = message;
+        if (text == null || arena != null) {
+            return;
+        }
+        try {
+            arenaHandle = target.addEntry(this);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        arena = target;
+        message = null;
+    }
+
+    // Puts the text back on the message and frees its arena entry, once the registry lets it go
+    void release() {
+        MessageArena retained = arena;
+        if (retained == null) {
+            return;
+        }
+        message = retained.body(arenaHandle);
+        arena = null;
+        retained.free(arenaHandle);
+    }
+    // Distinct indexed words for a message opened from the store manifest, otherwise null
+    String[] getIndexTerms() {
+        return terms;
     }
     public String getRecipient() {
-        return recipient;
+        return recipientNumber == RecipientNumber.NONE ? invalidRecipient : RecipientNumber.decode(recipientNumber);
+    }
+    public long getRecipientNumber() {
+        return recipientNumber;
     }
     public String getMessageID() {
         return messageID;
@@ -103,62 +241,155 @@ public final class Message {
 
     // Message length validation: max 250 chars
     public String validateMessageLength() {
-        int length = message.length();
-        if (length <= 250) {
+        return validateMessageLength(getMessage());
+    }
+
+    // The same feedback for text that has not been made into a message yet
+    static String validateMessageLength(String message) {
+        if (Validators.checkMessageLength(message).isValid()) {
             return "Message ready to send.";
         } else {
-            int excess = length - 250;
+            int excess = message.length() - Validators.MAX_MESSAGE_LENGTH;
             return "Message exceeds 250 characters by " + excess + ", please reduce size.";
         }
     }
     
-    // Converts this Message object into a JSON string using Gson
+    // Converts this Message object into a JSON string using the shared streaming codec
     public String toJson() {
-        Gson gson = new Gson();
-        return gson.toJson(this);
+        return JsonMessageCodec.INSTANCE.toJson(this);
     }
     // Static method to recreate a Message object from JSON string
     public static Message fromJson(String json) {
-        Gson gson = new Gson();
-        return gson.fromJson(json, Message.class);
+        return JsonMessageCodec.INSTANCE.fromJson(json);
     }
     
     // Store to file
     public boolean writeMessageToFile(String fileName) {
+        long start = System.nanoTime();
+        Metrics.Operation timer = metrics.operation("writeFile");
         try (java.io.FileWriter writer = new java.io.FileWriter(fileName)) {
             writer.write(toJson());
-            return true;
         } catch (java.io.IOException e) {
+            timer.record(start, false);
             JOptionPane.showMessageDialog(null, "Error saving message: " + e.getMessage());
             return false;
         }
+        timer.record(start);
+        return true;
     }
     
-     // Store with dialog
-    public void storeMessageToFileWithDialog() {
-        String fileName = "message_" + messageID + ".json";
-        if (writeMessageToFile(fileName)) {
-            JOptionPane.showMessageDialog(null, "Message stored to: " + fileName);
+    // Append to the message store
+    public boolean storeMessage() {
+        MessageService.SendResult result = storeMessageAsync().join();
+        if (!result.isSuccess()) {
+            JOptionPane.showMessageDialog(null, result.getDetail());
         }
+        return result.isSuccess();
+    }
+
+    // Queues the message for the store and returns at once; the future completes when it is written
+    public CompletableFuture<MessageService.SendResult> storeMessageAsync() {
+        return service.store(List.of(this)).thenApply(results -> results.get(0));
+    }
+
+     // Store with dialog; the write finishes in the background and one dialog reports how it ended
+    public void storeMessageToFileWithDialog() {
+        storeMessageAsync().whenComplete((result, error) -> {
+            String text;
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                text = "Error saving message: " + cause.getMessage();
+            } else if (!result.isSuccess()) {
+                text = result.getDetail();
+            } else {
+                text = "Message successfully stored to send later in " + messageStore.getDirectory() + ":\n\n"
+                        + "Message ID: " + messageID + "\n"
+                        + "Message Number: " + messageNumber + "\n"
+                        + "Recipient: " + getRecipient() + "\n"
+                        + "Message: " + getMessage() + "\n"
+                        + "Message Hash: " + messageHash;
+            }
+            javax.swing.SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, text));
+        });
     }
 
     // Load stored messages (ChatGPT assistance)
-    public static void loadStoredMessagesFromFiles() {
-        storedMessages.clear();
+    public static StoredMessageLoader.LoadResult loadStoredMessagesFromFiles() {
+        try {
+            return loadStoredMessages();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Error reading message store: " + e.getMessage());
+            return null;
+        }
+        // JSON parsing logic inspired by ChatGPT guidance for file handling.
+    }
+
+    // Loads the stored messages into the registry without any dialogs, for the server and the
+    // command line; errors are thrown to the caller
+    public static StoredMessageLoader.LoadResult loadStoredMessages() throws IOException {
+        long start = System.nanoTime();
+        Metrics.Operation timer = metrics.operation("load");
+        registry.clearStored();
+        StoredMessageLoader loader = new StoredMessageLoader();
+        try {
+            migrateLegacyMessageFiles(loader);
+            // A current manifest opens the store without decoding it. It carries each message's length
+            // and words, so the registry and its indexes are filled here without reading any body;
+            // bodies are read from the store only when a message is shown
+            List<Message> summaries = messageStore.openFromManifest();
+            if (summaries != null) {
+                for (Message m : summaries) {
+                    registry.addStored(m);
+                }
+                timer.record(start);
+                return new StoredMessageLoader.LoadResult(summaries, summaries.size(), System.nanoTime() - start);
+            }
+
+            // Records are decoded in parallel; adding them to the registry stays on this thread
+            StoredMessageLoader.LoadResult result = loader.load(messageStore);
+            for (Message m : result.getMessages()) {
+                registry.addStored(m);
+            }
+            timer.record(start);
+            return result;
+        } catch (IOException e) {
+            timer.record(start, false);
+            throw e;
+        }
+    }
+
+    // Saves the store manifest so the next start can skip decoding stored messages
+    private static void saveStoredMessageManifest() {
+        try {
+            messageStore.writeManifest(registry.getStoredMessages());
+        } catch (IOException | RuntimeException e) {
+            // The next start falls back to reading the whole store
+            JOptionPane.showMessageDialog(null, "Error saving the stored message index: " + e.getMessage());
+        }
+    }
+
+    // Moves any message_<id>.json files from older versions into the message store
+    private static void migrateLegacyMessageFiles(StoredMessageLoader loader) throws IOException {
         java.io.File currentDir = new java.io.File(".");
         java.io.File[] files = currentDir.listFiles((dir, name) -> name.matches("message_\\d{10}\\.json"));
-        if (files != null) {
-            Gson gson = new Gson();
-            for (java.io.File file : files) {
-                try (java.io.BufferedReader br = new java.io.BufferedReader(new java.io.FileReader(file))) {
-                    Message m = gson.fromJson(br, Message.class);
-                    if (m != null) storedMessages.add(m);
-                } catch (java.io.IOException e) {
-                    JOptionPane.showMessageDialog(null, "Error reading file: " + e.getMessage());
-                }
+        if (files == null || files.length == 0) {
+            return;
+        }
+        List<java.nio.file.Path> paths = new ArrayList<>(files.length);
+        for (java.io.File file : files) {
+            paths.add(file.toPath());
+        }
+        for (Message m : loader.loadJsonFiles(paths).getMessages()) {
+            messageStore.append(m);
+        }
+        messageStore.sync();
+        // Only remove the old files once their records are safely on disk
+        for (java.io.File file : files) {
+            String id = file.getName().substring("message_".length(), "message_".length() + 10);
+            if (messageStore.contains(id)) {
+                file.delete();
             }
         }
-        // JSON parsing logic inspired by ChatGPT guidance for file handling.
     }
     
     
@@ -167,8 +398,22 @@ public final class Message {
     // Runs the interactive app with menu options
     public static void runApp() {
         
-        // Load stored messages once at startup
+        if (!metrics.registerMBeans()) {
+            JOptionPane.showMessageDialog(null, metrics.getJmxFailure());
+        }
+
+        // Recover sent messages, then load stored messages once at startup
+        try {
+            sentJournal.recover(registry);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Error recovering sent messages: " + e.getMessage());
+        }
         loadStoredMessagesFromFiles();
+        try {
+            storedWatcher.start();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Dropped message files will not be picked up while running: " + e.getMessage());
+        }
         
         boolean running = true;
         while (running) {
@@ -176,7 +421,8 @@ public final class Message {
                     "Choose an option:" +
                             "\n1) Send Messages" +
                             "\n2) Show Recently Sent Messages" +
-                            "\n3) Quit",
+                            "\n3) Show Performance Metrics" +
+                            "\n4) Quit",
                     "QuickChat Menu", JOptionPane.QUESTION_MESSAGE);
 
             if (menuOption == null) { // Cancel pressed
@@ -191,13 +437,39 @@ public final class Message {
                     showSentMessagesMenu();
                     break;
                 case "3":
+                    showMetrics();
+                    break;
+                case "4":
                     running = false;
                     break;
                 default:
-                    JOptionPane.showMessageDialog(null, "Invalid option. Please select 1, 2, or 3.");
+                    JOptionPane.showMessageDialog(null, "Invalid option. Please select 1, 2, 3, or 4.");
                     break;
             }
         }
+
+        try {
+            storedWatcher.close();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Error stopping the message file watcher: " + e.getMessage());
+        }
+
+        // Stores are written behind; make sure they and the sent message log are on disk before the app exits
+        service.flush().join();
+        try {
+            sentJournal.sync();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Error saving sent messages: " + e.getMessage());
+        }
+        saveStoredMessageManifest();
+    }
+
+    // Shows how many times each timed operation ran and how long it took
+    public static void showMetrics() {
+        JTextArea table = new JTextArea(metrics.dump());
+        table.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        table.setEditable(false);
+        JOptionPane.showMessageDialog(null, table, "Performance Metrics", JOptionPane.INFORMATION_MESSAGE);
     }
 
     // collect, validate, and send/store messages
@@ -224,7 +496,7 @@ public final class Message {
             String recipient = JOptionPane.showInputDialog("Enter recipient " + i + "'s number (include international code, max 13 chars):");
             if (recipient == null) return;
             
-            if (!recipient.matches("\\+27\\d{9}")) {
+            if (!Validators.checkPhone(recipient).isValid()) {
                 JOptionPane.showMessageDialog(null,
                         "Invalid cell phone number.\nMust start with +27 and be followed by exactly 9 digits.\nExample: +27831234567");
                 i--; // Retry this message
@@ -236,24 +508,16 @@ public final class Message {
             String messageText = JOptionPane.showInputDialog("Enter message (max 250 characters):");
             if (messageText == null) return;
 
-            Message message = new Message(i, recipient, messageText);
-
-            // Validate recipient
-            if (!message.checkRecipientCell()) {
-                JOptionPane.showMessageDialog(null,
-                        "Cell phone number is incorrectly formatted or does not contain an international code. Please correct the number and try again.");
-                i--; // allow to re-enter this message
-                continue;
-            }
-
-            // Validate message length
-            String validationMsg = message.validateMessageLength();
-            if (!validationMsg.equals("Message ready to send.")) {
-                JOptionPane.showMessageDialog(null, validationMsg);
+            // Validate message length (the recipient was already checked above) before the
+            // message is built, so a rejected message does not use up an ID
+            if (!Validators.checkMessageLength(messageText).isValid()) {
+                JOptionPane.showMessageDialog(null, validateMessageLength(messageText));
                 i--; // re-enter this message
                 continue;
             }
 
+            Message message = new Message(i, recipient, messageText);
+
             // Ask send options
             String[] options = {"Send Message", "Disregard Message", "Store Message to send later"};
             int choice = JOptionPane.showOptionDialog(null,
@@ -267,32 +531,26 @@ public final class Message {
 
             switch (choice) {
                 case 0: // Send message
-                    messageList.add(message);
-                    sentMessages.add(message);
-                    messageHashes.add(message.getMessageHash());
-                    messageIDs.add(message.getMessageID());
-                    totalMessagesSent++;
+                    MessageService.SendResult result = service.send(List.of(message)).join().get(0);
+                    if (!result.isSuccess()) {
+                        JOptionPane.showMessageDialog(null, result.getDetail());
+                        break;
+                    }
                     JOptionPane.showMessageDialog(null, "Message sent.\n\n" + message.printMessage());
                     break;
                 case 1: // Disregard
-                    disregardedMessages.add(message);
+                    service.disregard(message);
                     JOptionPane.showMessageDialog(null, "Message disregarded and not saved");
                     break;
                 case 2: // Store message to send later
                     message.storeMessageToFileWithDialog();
-                    JOptionPane.showMessageDialog(null, "Message successfully stored to send later:\n\n"
-                            + "Message ID: " + message.getMessageID() + "\n"
-                            + "Message Number: " + message.getMessageNumber() + "\n"
-                            + "Recipient: " + message.getRecipient() + "\n"
-                            + "Message: " + message.getMessage() + "\n"
-                            + "Message Hash: " + message.getMessageHash());
                     break;
                 default:
                     JOptionPane.showMessageDialog(null, "No valid option selected. Message disregarded.");
                     break;
             }
         }
-        JOptionPane.showMessageDialog(null, "Total messages sent: " + totalMessagesSent);
+        JOptionPane.showMessageDialog(null, "Total messages sent: " + registry.totalSent());
     }
     
     
@@ -308,11 +566,13 @@ public final class Message {
                 + "4) Search messages by recipient\n"
                 + "5) Delete a message using message hash\n"
                 + "6) Display full sent messages report\n"
-                + "7) Return to Main Menu";
+                + "7) Export sent messages report to a file\n"
+                + "8) Search messages by keyword\n"
+                + "9) Return to Main Menu";
 
         while (true) {
             String option = JOptionPane.showInputDialog(null, menu, "Sent Messages Menu", JOptionPane.QUESTION_MESSAGE);
-            if (option == null || option.equals("7")) break;
+            if (option == null || option.equals("9")) break;
 
             switch (option) {
                 case "1":
@@ -333,38 +593,41 @@ public final class Message {
                 case "6":
                     displayFullSentMessagesReport();
                     break;
+                case "7":
+                    exportSentMessagesReport();
+                    break;
+                case "8":
+                    searchMessagesByKeyword();
+                    break;
                 default:
-                    JOptionPane.showMessageDialog(null, "Invalid option, please choose 1-7.");
+                    JOptionPane.showMessageDialog(null, "Invalid option, please choose 1-9.");
             }
         }
     }
     
         // 1) Display sender and recipient of all sent messages
     public static void displaySenderAndRecipient() {
-        if (sentMessages.isEmpty()) {
+        if (registry.sentCount() == 0) {
             JOptionPane.showMessageDialog(null, "No sent messages to display.");
             return;
         }
 
-        StringBuilder sb = new StringBuilder("Sender and Recipient of Sent Messages:\n");
-        for (Message m : sentMessages) {
-            sb.append("Sender: Me\nRecipient: ").append(m.getRecipient()).append("\n\n");
-        }
-        JOptionPane.showMessageDialog(null, sb.toString());
+        showReportPages(MessageReport.Type.SENDER_RECIPIENT);
     }
     
         // 2) Display the longest sent message
     public static void displayLongestMessage() {
-        if (sentMessages.isEmpty()) {
+        if (registry.sentCount() == 0) {
             JOptionPane.showMessageDialog(null, "No sent messages available.");
             return;
         }
 
-        Message longest = sentMessages.get(0);
-        for (Message m : sentMessages) {
-            if (m.getMessage().length() > longest.getMessage().length()) {
-                longest = m;
-            }
+        long start = System.nanoTime();
+        Message longest = statistics.longest(MessageRegistry.Kind.SENT);
+        metrics.operation("query.longest").record(start);
+        if (longest == null) {
+            JOptionPane.showMessageDialog(null, "No sent messages available.");
+            return;
         }
 
         JOptionPane.showMessageDialog(null, "Longest sent message:\n" + longest.getMessage());
@@ -375,13 +638,14 @@ public final class Message {
         String searchID = JOptionPane.showInputDialog("Enter Message ID to search:");
         if (searchID == null || searchID.trim().isEmpty()) return;
 
-        for (Message m : sentMessages) {
-            if (m.getMessageID().equals(searchID)) {
-                JOptionPane.showMessageDialog(null,
-                        "Message found:\nRecipient: " + m.getRecipient() +
-                                "\nMessage: " + m.getMessage());
-                return;
-            }
+        long start = System.nanoTime();
+        Message m = registry.findSentByID(searchID);
+        metrics.operation("query.messageId").record(start);
+        if (m != null) {
+            JOptionPane.showMessageDialog(null,
+                    "Message found:\nRecipient: " + m.getRecipient() +
+                            "\nMessage: " + m.getMessage());
+            return;
         }
         JOptionPane.showMessageDialog(null, "Message ID not found.");
     }
@@ -392,27 +656,21 @@ public final class Message {
         String recipientSearch = JOptionPane.showInputDialog("Enter recipient number to search messages:");
         if (recipientSearch == null || recipientSearch.trim().isEmpty()) return;
 
-        List<String> foundMessages = new ArrayList<>();
+        // Latest sent and stored messages to the recipient, read from the conversation index
+        long start = System.nanoTime();
+        MessageRegistry.Page found = conversations.before(recipientSearch.trim(), Long.MAX_VALUE, CONVERSATION_PAGE_SIZE);
+        metrics.operation("query.recipient").record(start);
 
-        // Search sent messages
-        for (Message m : sentMessages) {
-            if (m.getRecipient().equals(recipientSearch)) {
-                foundMessages.add(m.getMessage());
-            }
-        }
-        // Search stored messages
-        for (Message m : storedMessages) {
-            if (m.getRecipient().equals(recipientSearch)) {
-                foundMessages.add(m.getMessage());
-            }
-        }
-
-        if (foundMessages.isEmpty()) {
+        if (found.isEmpty()) {
             JOptionPane.showMessageDialog(null, "No messages found for recipient: " + recipientSearch);
         } else {
             StringBuilder sb = new StringBuilder("Messages for recipient " + recipientSearch + ":\n");
-            for (String msg : foundMessages) {
-                sb.append("- ").append(msg).append("\n");
+            if (found.hasMore()) {
+                sb.append("(latest ").append(found.getMessages().size()).append(" of ")
+                        .append(conversations.count(recipientSearch.trim())).append(")\n");
+            }
+            for (Message m : found.getMessages()) {
+                sb.append("- ").append(m.getMessage()).append("\n");
             }
             JOptionPane.showMessageDialog(null, sb.toString());
         }
@@ -423,35 +681,123 @@ public final class Message {
         String hashToDelete = JOptionPane.showInputDialog("Enter Message Hash to delete:");
         if (hashToDelete == null || hashToDelete.trim().isEmpty()) return;
 
-        Iterator<Message> iterator = sentMessages.iterator();
-        boolean deleted = false;
-        while (iterator.hasNext()) {
-            Message m = iterator.next();
-            if (m.getMessageHash().equals(hashToDelete)) {
-                iterator.remove();
-                messageHashes.remove(hashToDelete);
-                messageIDs.remove(m.getMessageID());
-                deleted = true;
-                JOptionPane.showMessageDialog(null, "Message deleted successfully.");
-                break;
-            }
-        }
-        if (!deleted) {
+        long start = System.nanoTime();
+        boolean deleted = registry.removeSentByHash(hashToDelete) != null;
+        metrics.operation("query.deleteByHash").record(start);
+        if (deleted) {
+            JOptionPane.showMessageDialog(null, "Message deleted successfully.");
+        } else {
             JOptionPane.showMessageDialog(null, "Message hash not found.");
         }
     }
 
     // 6) Display a full report of all sent messages
     public static void displayFullSentMessagesReport() {
-        if (sentMessages.isEmpty()) {
+        if (registry.sentCount() == 0) {
             JOptionPane.showMessageDialog(null, "No sent messages to report.");
             return;
         }
 
-        StringBuilder report = new StringBuilder("Full Sent Messages Report:\n\n");
-        for (Message m : sentMessages) {
-            report.append(m.printMessage()).append("\n\n");
+        showReportPages(MessageReport.Type.FULL);
+    }
+
+    // 7) Stream the full sent messages report to a CSV, NDJSON or text file
+    public static void exportSentMessagesReport() {
+        if (registry.sentCount() == 0) {
+            JOptionPane.showMessageDialog(null, "No sent messages to export.");
+            return;
+        }
+
+        MessageReport.Format[] formats = {MessageReport.Format.CSV, MessageReport.Format.NDJSON, MessageReport.Format.TEXT};
+        Object[] labels = {"CSV", "NDJSON", "Text"};
+        int choice = JOptionPane.showOptionDialog(null, "Choose an export format:", "Export Sent Messages",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, labels, labels[0]);
+        if (choice < 0) return;
+        MessageReport.Format format = formats[choice];
+
+        String extension = format == MessageReport.Format.TEXT ? "txt" : format.name().toLowerCase();
+        String fileName = JOptionPane.showInputDialog("Enter file name:", "sent_messages_report." + extension);
+        if (fileName == null || fileName.trim().isEmpty()) return;
+
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(fileName.trim()), java.nio.charset.StandardCharsets.UTF_8))) {
+            long start = System.nanoTime();
+            long rows = reports.write(MessageReport.Type.FULL, format, out);
+            metrics.operation("query.export").record(start);
+            JOptionPane.showMessageDialog(null, "Exported " + rows + " messages to: " + fileName.trim());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Error exporting report: " + e.getMessage());
+        }
+    }
+
+    // 8) Search sent and stored messages by the words in their text
+    public static void searchMessagesByKeyword() {
+        String query = JOptionPane.showInputDialog("Enter keywords to search for (end a word with * to match its prefix):");
+        if (query == null || query.trim().isEmpty()) return;
+
+        long started = System.nanoTime();
+        List<Message> found = textIndex.search(query, SEARCH_RESULT_LIMIT);
+        metrics.operation("query.keyword").record(started);
+        if (found.isEmpty()) {
+            JOptionPane.showMessageDialog(null, "No messages found for: " + query);
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder("Messages matching \"" + query.trim() + "\" (newest first):\n");
+        for (Message m : found) {
+            sb.append("- ").append(m.getRecipient()).append(": ").append(m.getMessage()).append("\n");
+        }
+        JOptionPane.showMessageDialog(null, sb.toString());
+    }
+
+    // Shows a report one page at a time. Each page starts after the last message of the one
+    // before, so paging stays cheap however many messages were sent; earlier page starts are
+    // kept on a stack for Previous
+    private static void showReportPages(MessageReport.Type type) {
+        Deque<Long> previousStarts = new ArrayDeque<>();
+        long start = 0;
+        int pageNumber = 1;
+
+        while (true) {
+            long started = System.nanoTime();
+            MessageRegistry.Page page = registry.sentPage(start, REPORT_PAGE_SIZE);
+            if (page.isEmpty() && pageNumber > 1) {
+                // Messages were deleted meanwhile; step back to the page before
+                start = previousStarts.pop();
+                pageNumber--;
+                continue;
+            }
+            int pages = Math.max(pageNumber + (page.hasMore() ? 1 : 0),
+                    MessageReport.pageCount(registry.sentCount(), REPORT_PAGE_SIZE));
+
+            StringWriter text = new StringWriter();
+            try {
+                MessageReport.write(type, MessageReport.Format.TEXT, page.getMessages(), text);
+            } catch (IOException e) {
+                // A StringWriter never fails
+            }
+            metrics.operation("query.reportPage").record(started);
+            text.append("Page ").append(String.valueOf(pageNumber)).append(" of ").append(String.valueOf(pages));
+
+            List<String> options = new ArrayList<>();
+            if (pageNumber > 1) options.add("Previous");
+            if (page.hasMore()) options.add("Next");
+            options.add("Close");
+            int choice = JOptionPane.showOptionDialog(null, text.toString(), "Sent Messages Report",
+                    JOptionPane.DEFAULT_OPTION, JOptionPane.INFORMATION_MESSAGE, null,
+                    options.toArray(), options.get(options.size() - 1));
+            String selected = choice < 0 ? "Close" : options.get(choice);
+
+            if (selected.equals("Next")) {
+                previousStarts.push(start);
+                start = page.getLastSequence();
+                pageNumber++;
+            } else if (selected.equals("Previous")) {
+                start = previousStarts.pop();
+                pageNumber--;
+            } else {
+                return;
+            }
         }
-        JOptionPane.showMessageDialog(null, report.toString());
     }
 }
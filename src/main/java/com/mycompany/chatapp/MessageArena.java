@@ -0,0 +1,366 @@
+package com.mycompany.chatapp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Columnar home for large numbers of retained messages.
+// Instead of a Message and four Strings per message, the arena keeps one entry per column:
+// the 10-digit ID as a long, the number as an int, the recipient as its RecipientNumber, and the
+// UTF-8 body and hash packed back to back in 1 MiB byte[] slabs.
+// A message costs its UTF-8 bytes plus 40 bytes of column data, and the heap holds a handful of
+// large arrays no matter how many messages are added, so the garbage collector has almost
+// nothing to trace. View reads one entry through the same getters as Message and can be
+// moved from entry to entry without allocating.
+//
+// MessageRegistry keeps the text of its sent messages here (see Message.retainIn). An entry is
+// freed when its message leaves the registry, whether by hash or otherwise: the slot goes on a
+// free list for the next add, and once more than half of the slab bytes belong to freed entries
+// the live bytes are copied into fresh slabs. Slots never move, and a slot's generation changes
+// each time it is freed, so a handle to a freed entry reads as null, never as another message.
+//
+// A read-write lock guards the columns: reads share it; add, free and compaction take it alone.
+public class MessageArena {
+
+    static final int SLAB_BYTES = 1 << 20;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Address of a freed slot
+    private static final long FREE = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] numbers = new int[INITIAL_CAPACITY];
+    private long[] recipientNumbers = new long[INITIAL_CAPACITY];
+    // Slab index in the high 32 bits, offset in the low 32 bits; FREE once the slot is freed
+    private long[] addresses = new long[INITIAL_CAPACITY];
+    private int[] bodyLengths = new int[INITIAL_CAPACITY];
+    private int[] hashLengths = new int[INITIAL_CAPACITY];
+    private int[] generations = new int[INITIAL_CAPACITY];
+
+    private byte[][] slabs = new byte[][] {new byte[SLAB_BYTES]};
+    private int slabOffset;
+    // Slab bytes that belong to freed entries
+    private long deadBytes;
+
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    // One past the highest slot ever used
+    private int end;
+    private int size;
+
+    // Copies the message into the arena and returns its slot
+    public int add(Message message) {
+        return (int) addEntry(message);
+    }
+
+    public void addAll(Iterable<Message> messages) {
+        for (Message message : messages) {
+            add(message);
+        }
+    }
+
+    // Copies the message in and returns a handle: the slot in the low 32 bits, its generation above
+    long addEntry(Message message) {
+        long id = parseId(message.getMessageID());
+        byte[] body = utf8(message.getMessage());
+        byte[] hash = utf8(message.getMessageHash());
+        lock.writeLock().lock();
+        try {
+            int index;
+            if (freeCount > 0) {
+                index = freeSlots[--freeCount];
+            } else {
+                index = end;
+                if (index == ids.length) {
+                    grow(index * 2);
+                }
+                end = index + 1;
+            }
+            ids[index] = id;
+            numbers[index] = message.getMessageNumber();
+            recipientNumbers[index] = message.getRecipientNumber();
+            long address = reserve(body.length + hash.length);
+            byte[] slab = slabs[(int) (address >>> 32)];
+            int offset = (int) address;
+            System.arraycopy(body, 0, slab, offset, body.length);
+            System.arraycopy(hash, 0, slab, offset + body.length, hash.length);
+            addresses[index] = address;
+            bodyLengths[index] = body.length;
+            hashLengths[index] = hash.length;
+            size++;
+            return ((long) generations[index] << 32) | index;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Text of the entry behind a handle from addEntry, or null once the entry has been freed
+    String body(long handle) {
+        int index = (int) handle;
+        lock.readLock().lock();
+        try {
+            if (!live(index) || generations[index] != (int) (handle >>> 32)) {
+                return null;
+            }
+            return text(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Frees the entry behind a handle for reuse; a handle already freed is ignored
+    void free(long handle) {
+        int index = (int) handle;
+        lock.writeLock().lock();
+        try {
+            if (!live(index) || generations[index] != (int) (handle >>> 32)) {
+                return;
+            }
+            deadBytes += bodyLengths[index] + hashLengths[index];
+            addresses[index] = FREE;
+            generations[index]++;
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = index;
+            size--;
+            if (deadBytes > SLAB_BYTES && deadBytes * 2 > slabBytes()) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Number of live entries
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // A view positioned on the entry in the given slot
+    public View view(int index) {
+        return new View().moveTo(index);
+    }
+
+    // Visits every live entry with one reused view; the view must not be kept after the call.
+    // Adds and frees wait until the walk is done
+    public void forEach(Consumer<View> action) {
+        View view = new View();
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < end; i++) {
+                if (live(i)) {
+                    action.accept(view.moveTo(i));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Rebuilds an ordinary Message from the entry in the given slot
+    public Message toMessage(int index) {
+        lock.readLock().lock();
+        try {
+            View view = view(index);
+            return new Message(view.getMessageID(), view.getMessageNumber(), view.getRecipient(),
+                    view.getMessage(), view.getMessageHash());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Bytes held by columns and slabs, not counting object headers
+    public long bytesUsed() {
+        lock.readLock().lock();
+        try {
+            long columns = (long) ids.length * (8 + 4 + 8 + 8 + 4 + 4 + 4);
+            return columns + slabBytes() + (long) freeSlots.length * 4;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // IDs are always 10 digits (see MessageIdAllocator), so they fit a long exactly
+    static long parseId(String messageID) {
+        if (messageID == null || messageID.length() != 10) {
+            throw new IllegalArgumentException("Message ID must be 10 digits: " + messageID);
+        }
+        long id = 0;
+        for (int i = 0; i < 10; i++) {
+            char c = messageID.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Message ID must be 10 digits: " + messageID);
+            }
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+
+    static String formatId(long id) {
+        String digits = Long.toString(id);
+        return "0000000000".substring(digits.length()) + digits;
+    }
+
+    private static byte[] utf8(String text) {
+        return text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean live(int index) {
+        return index >= 0 && index < end && addresses[index] != FREE;
+    }
+
+    private String text(int index) {
+        long address = addresses[index];
+        return new String(slabs[(int) (address >>> 32)], (int) address, bodyLengths[index], StandardCharsets.UTF_8);
+    }
+
+    private long slabBytes() {
+        long bytes = 0;
+        for (byte[] slab : slabs) {
+            bytes += slab.length;
+        }
+        return bytes;
+    }
+
+    // Space for one record; a record never straddles two slabs
+    private long reserve(int length) {
+        if (slabOffset + length > slabs[slabs.length - 1].length) {
+            byte[][] grown = Arrays.copyOf(slabs, slabs.length + 1);
+            grown[slabs.length] = new byte[Math.max(SLAB_BYTES, length)];
+            slabs = grown;
+            slabOffset = 0;
+        }
+        long address = ((long) (slabs.length - 1) << 32) | slabOffset;
+        slabOffset += length;
+        return address;
+    }
+
+    // Copies the live records into fresh slabs so the freed bytes can be collected; slots keep
+    // their index and generation, only their addresses change
+    private void compact() {
+        byte[][] old = slabs;
+        slabs = new byte[][] {new byte[SLAB_BYTES]};
+        slabOffset = 0;
+        for (int i = 0; i < end; i++) {
+            if (addresses[i] == FREE) {
+                continue;
+            }
+            int length = bodyLengths[i] + hashLengths[i];
+            long address = reserve(length);
+            System.arraycopy(old[(int) (addresses[i] >>> 32)], (int) addresses[i], slabs[(int) (address >>> 32)],
+                    (int) address, length);
+            addresses[i] = address;
+        }
+        deadBytes = 0;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        numbers = Arrays.copyOf(numbers, capacity);
+        recipientNumbers = Arrays.copyOf(recipientNumbers, capacity);
+        addresses = Arrays.copyOf(addresses, capacity);
+        bodyLengths = Arrays.copyOf(bodyLengths, capacity);
+        hashLengths = Arrays.copyOf(hashLengths, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+    }
+
+    // Flyweight over one arena entry. Strings are decoded on each call; getMessageIdAsLong,
+    // getMessageNumber, getRecipientNumber and getMessageByteLength read the columns without allocating.
+    public final class View {
+
+        private int index;
+
+        private View() {
+        }
+
+        // Repositions the view and returns it
+        public View moveTo(int index) {
+            lock.readLock().lock();
+            try {
+                if (!live(index)) {
+                    throw new IndexOutOfBoundsException("No arena entry " + index);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            this.index = index;
+            return this;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getMessageIdAsLong() {
+            lock.readLock().lock();
+            try {
+                return ids[index];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public String getMessageID() {
+            return formatId(getMessageIdAsLong());
+        }
+
+        public int getMessageNumber() {
+            lock.readLock().lock();
+            try {
+                return numbers[index];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public long getRecipientNumber() {
+            lock.readLock().lock();
+            try {
+                return recipientNumbers[index];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public String getRecipient() {
+            return RecipientNumber.decode(getRecipientNumber());
+        }
+
+        public int getMessageByteLength() {
+            lock.readLock().lock();
+            try {
+                return bodyLengths[index];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public String getMessage() {
+            lock.readLock().lock();
+            try {
+                return text(index);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public String getMessageHash() {
+            lock.readLock().lock();
+            try {
+                long address = addresses[index];
+                return new String(slabs[(int) (address >>> 32)], (int) address + bodyLengths[index], hashLengths[index],
+                        StandardCharsets.UTF_8);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
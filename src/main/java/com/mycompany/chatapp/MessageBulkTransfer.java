@@ -0,0 +1,339 @@
+package com.mycompany.chatapp;
+
+import com.google.gson.JsonParseException;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Streaming NDJSON import and export of sent or stored messages: one JSON object per line, in the
+// format JsonMessageCodec writes, so an export can be imported again as it is.
+//
+// Import reads CHUNK_LINES lines at a time. Each chunk is parsed into messages in parallel on a
+// fork-join pool; lines without a messageID get a new ID from the transfer's allocator, and lines
+// without a messageHash get one computed. The chunk then goes to MessageService, which validates it and adds it to the registry
+// in batches, sending or storing it as the menu would. While one chunk is with the service the
+// next is read and parsed, so at most two chunks are held at once however large the file is.
+// Every rejected line is written to the report, in input order, as "line,messageID,reason"; a chunk
+// the service could not write at all is reported line by line as IO_ERROR and the import goes on.
+//
+// Export streams the registry's cursor through MessageReport, so it holds no copy either.
+public class MessageBulkTransfer {
+
+    static final int CHUNK_LINES = 1024;
+    // Lines per leaf task; below this splitting costs more than it saves
+    static final int SEQUENTIAL_THRESHOLD = 128;
+
+    static final String MALFORMED = "MALFORMED";
+    static final String DUPLICATE_ID = "DUPLICATE_ID";
+    static final String IO_ERROR = "IO_ERROR";
+
+    private final MessageRegistry registry;
+    private final MessageService service;
+    private final MessageIdAllocator ids;
+    private final ForkJoinPool pool;
+
+    public MessageBulkTransfer(MessageRegistry registry, MessageService service) {
+        this(registry, service, Message.idAllocator, ForkJoinPool.commonPool());
+    }
+
+    public MessageBulkTransfer(MessageRegistry registry, MessageService service, ForkJoinPool pool) {
+        this(registry, service, Message.idAllocator, pool);
+    }
+
+    public MessageBulkTransfer(MessageRegistry registry, MessageService service, MessageIdAllocator ids, ForkJoinPool pool) {
+        this.registry = registry;
+        this.service = service;
+        this.ids = ids;
+        this.pool = pool;
+    }
+
+    // Imports an NDJSON file as sent or stored messages and writes rejected lines to the report file
+    public ImportResult importFile(Path ndjson, MessageRegistry.Kind kind, Path report) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(ndjson, StandardCharsets.UTF_8);
+                Writer out = new BufferedWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8), 1 << 16)) {
+            return importMessages(in, kind, out);
+        }
+    }
+
+    public ImportResult importMessages(Reader ndjson, MessageRegistry.Kind kind, Writer report) throws IOException {
+        long start = System.nanoTime();
+        BufferedReader in = ndjson instanceof BufferedReader ? (BufferedReader) ndjson : new BufferedReader(ndjson, 1 << 16);
+        report.write("line,messageID,reason\r\n");
+        int lineNumber = 0;
+        int read = 0;
+        int imported = 0;
+        int rejected = 0;
+        // IDs of the chunk still with the service, which may not be in the registry yet
+        Set<String> pendingIds = new HashSet<>();
+        Chunk pending = null;
+        while (true) {
+            List<Line> lines = new ArrayList<>(CHUNK_LINES);
+            String text;
+            while (lines.size() < CHUNK_LINES && (text = in.readLine()) != null) {
+                lineNumber++;
+                if (!text.isBlank()) {
+                    lines.add(new Line(lineNumber, text));
+                }
+            }
+            if (!lines.isEmpty()) {
+                pool.invoke(new ParseTask(lines, 0, lines.size()));
+            }
+            Set<String> chunkIds = rejectDuplicates(lines, pendingIds);
+
+            if (pending != null) {
+                imported += pending.finish();
+                rejected += pending.writeRejected(report);
+            }
+            if (lines.isEmpty()) {
+                break;
+            }
+            read += lines.size();
+            pending = new Chunk(lines);
+            pending.submit(kind);
+            pendingIds = chunkIds;
+        }
+        report.flush();
+        return new ImportResult(read, imported, rejected, System.nanoTime() - start);
+    }
+
+    // Writes every sent or stored message as NDJSON and returns how many were written
+    public long export(MessageRegistry.Kind kind, Writer out) throws IOException {
+        Iterable<Message> cursor = kind == MessageRegistry.Kind.SENT ? registry.sentCursor() : registry.storedCursor();
+        return MessageReport.write(MessageReport.Type.FULL, MessageReport.Format.NDJSON, cursor, out);
+    }
+
+    public long exportFile(MessageRegistry.Kind kind, Path ndjson) throws IOException {
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(ndjson, StandardCharsets.UTF_8), 1 << 16)) {
+            return export(kind, out);
+        }
+    }
+
+    // Builds the message for one line, or records why it cannot be imported
+    void parse(Line line) {
+        Message message;
+        try {
+            message = JsonMessageCodec.INSTANCE.fromJson(line.text);
+        } catch (JsonParseException | IllegalStateException | NumberFormatException e) {
+            line.reason = MALFORMED;
+            return;
+        }
+        if (message == null) {
+            line.reason = MALFORMED;
+            return;
+        }
+        if (message.getMessage() == null) {
+            line.reason = ValidationCode.MISSING_VALUE.name();
+            return;
+        }
+        if (message.getMessageID() == null) {
+            String id = nextId();
+            message = new Message(id, message.getMessageNumber(), message.getRecipient(), message.getMessage(),
+                    MessageHasher.hash(id, message.getMessageNumber(), message.getMessage()));
+        } else if (message.getMessageHash() == null && message.checkMessageID()) {
+            message = message.withRecomputedHash();
+        }
+        line.message = message;
+    }
+
+    // Allocates an ID for a line that has none, skipping any ID the registry already holds
+    private String nextId() {
+        String id;
+        do {
+            id = ids.nextId();
+        } while (registry.containsMessageID(id));
+        return id;
+    }
+
+    // The first line for an ID wins; later lines, and IDs already registered or still being
+    // imported, are rejected. Sequential and cheap, so the outcome never depends on thread timing.
+    private Set<String> rejectDuplicates(List<Line> lines, Set<String> pendingIds) {
+        Set<String> seen = new HashSet<>();
+        for (Line line : lines) {
+            if (line.reason != null) {
+                continue;
+            }
+            String id = line.message.getMessageID();
+            if (pendingIds.contains(id) || !seen.add(id) || registry.containsMessageID(id)) {
+                line.reason = DUPLICATE_ID;
+            }
+        }
+        return seen;
+    }
+
+    // One line of input and what became of it
+    static final class Line {
+        final int number;
+        String text;
+        Message message;
+        String reason;
+
+        Line(int number, String text) {
+            this.number = number;
+            this.text = text;
+        }
+    }
+
+    // A parsed chunk handed to the service
+    private final class Chunk {
+        private final List<Line> lines;
+        private final List<Line> accepted = new ArrayList<>();
+        private CompletableFuture<List<MessageService.SendResult>> results;
+
+        Chunk(List<Line> lines) {
+            this.lines = lines;
+        }
+
+        void submit(MessageRegistry.Kind kind) {
+            List<Message> messages = new ArrayList<>(lines.size());
+            for (Line line : lines) {
+                // The text is no longer needed once parsed
+                line.text = null;
+                if (line.reason == null) {
+                    accepted.add(line);
+                    messages.add(line.message);
+                }
+            }
+            results = kind == MessageRegistry.Kind.SENT ? service.send(messages) : service.store(messages);
+        }
+
+        // Waits for the service and returns how many messages it accepted; if the service failed
+        // the whole chunk, every line handed to it is rejected as IO_ERROR
+        int finish() {
+            List<MessageService.SendResult> done;
+            try {
+                done = results.join();
+            } catch (CompletionException e) {
+                for (Line line : accepted) {
+                    line.reason = IO_ERROR;
+                }
+                return 0;
+            }
+            int succeeded = 0;
+            for (int i = 0; i < done.size(); i++) {
+                if (done.get(i).isSuccess()) {
+                    succeeded++;
+                } else {
+                    accepted.get(i).reason = done.get(i).getStatus().name();
+                }
+            }
+            return succeeded;
+        }
+
+        int writeRejected(Writer report) throws IOException {
+            int rejected = 0;
+            for (Line line : lines) {
+                if (line.reason != null) {
+                    report.write(Integer.toString(line.number));
+                    report.write(',');
+                    MessageReport.writeCsvField(line.message != null ? line.message.getMessageID() : "", report);
+                    report.write(',');
+                    report.write(line.reason);
+                    report.write("\r\n");
+                    rejected++;
+                }
+            }
+            return rejected;
+        }
+    }
+
+    // Splits the chunk in halves until it is small enough to parse directly
+    private final class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Line> lines;
+        private final int from;
+        private final int to;
+
+        ParseTask(List<Line> lines, int from, int to) {
+            this.lines = lines;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    parse(lines.get(i));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ParseTask(lines, from, mid), new ParseTask(lines, mid, to));
+        }
+    }
+
+    // Counts from one import and how long it took
+    public static final class ImportResult {
+        private final int linesRead;
+        private final int imported;
+        private final int rejected;
+        private final long elapsedNanos;
+
+        ImportResult(int linesRead, int imported, int rejected, long elapsedNanos) {
+            this.linesRead = linesRead;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getLinesRead() {
+            return linesRead;
+        }
+
+        public int getImported() {
+            return imported;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return "Imported " + imported + " of " + linesRead + " messages (" + rejected + " rejected) in "
+                    + getElapsedMillis() + " ms";
+        }
+    }
+
+    // Imports into or exports from the app's saved messages from the command line
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !(args[0].equals("import") || args[0].equals("export"))) {
+            System.out.println("Usage: --messages import|export <messages.ndjson> [sent|stored] [rejections.csv]");
+            return;
+        }
+        Path file = Path.of(args[1]);
+        MessageRegistry.Kind kind = args.length > 2 && args[2].equalsIgnoreCase("stored")
+                ? MessageRegistry.Kind.STORED : MessageRegistry.Kind.SENT;
+        System.out.println(Message.sentJournal.recover(Message.registry));
+        Message.loadStoredMessages();
+        MessageBulkTransfer transfer = new MessageBulkTransfer(Message.registry, Message.service);
+        if (args[0].equals("export")) {
+            System.out.println("Exported " + transfer.exportFile(kind, file) + " messages to " + file);
+            return;
+        }
+        Path report = Path.of(args.length > 3 ? args[3] : args[1] + ".rejected.csv");
+        ImportResult result = transfer.importFile(file, kind, report);
+        Message.service.flush().join();
+        Message.sentJournal.sync();
+        System.out.println(result);
+        System.out.println("Rejected lines written to " + report);
+    }
+}
@@ -0,0 +1,27 @@
+package com.mycompany.chatapp;
+
+import java.nio.ByteBuffer;
+
+// Converts messages to and from bytes. Each codec has a format id that is written in front of
+// every record it produces, so readers can pick the right codec for records written earlier.
+public interface MessageCodec {
+
+    // Format id stored with each encoded record
+    byte formatId();
+
+    byte[] encode(Message message);
+
+    // Decodes one message from the buffer's remaining bytes
+    Message decode(ByteBuffer buffer);
+
+    // Returns the codec that reads records with the given format id
+    static MessageCodec forFormat(byte formatId) {
+        if (formatId == JsonMessageCodec.FORMAT_ID) {
+            return JsonMessageCodec.INSTANCE;
+        }
+        if (formatId == BinaryMessageCodec.FORMAT_ID) {
+            return BinaryMessageCodec.INSTANCE;
+        }
+        throw new IllegalArgumentException("Unknown message format: " + formatId);
+    }
+}
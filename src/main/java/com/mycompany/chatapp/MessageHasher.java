@@ -0,0 +1,85 @@
+package com.mycompany.chatapp;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+// Builds the "NN:num:FIRSTLAST" message hash in a single pass over the message text.
+// Instead of trim().split("\\s+") it scans in from both ends to find the first and last words,
+// and upper-cases ASCII words straight into one sized StringBuilder. The output is identical
+// to the split-based version: whitespace is what \s matches and trimming is what trim() removes.
+public final class MessageHasher {
+
+    private MessageHasher() {
+    }
+
+    public static String hash(String messageID, int messageNumber, String message) {
+        int start = 0;
+        int end = message.length();
+        while (start < end && message.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && message.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int firstEnd = start;
+        while (firstEnd < end && !isSpace(message.charAt(firstEnd))) {
+            firstEnd++;
+        }
+        int lastStart = end;
+        while (lastStart > firstEnd && !isSpace(message.charAt(lastStart - 1))) {
+            lastStart--;
+        }
+        // A single word is used as both the first and the last word
+        if (firstEnd == end) {
+            lastStart = start;
+        }
+
+        StringBuilder sb = new StringBuilder(16 + (firstEnd - start) + (end - lastStart));
+        sb.append(messageID, 0, 2).append(':').append(messageNumber).append(':');
+        boolean asciiCaseRules = asciiCaseRules();
+        appendUpper(sb, message, start, firstEnd, asciiCaseRules);
+        appendUpper(sb, message, lastStart, end, asciiCaseRules);
+        return sb.toString();
+    }
+
+    public static String hash(Message message) {
+        return hash(message.getMessageID(), message.getMessageNumber(), message.getMessage());
+    }
+
+    // Recomputes every hash in parallel and returns the messages whose stored hash differs
+    public static List<Message> verifyAll(List<Message> messages) {
+        return messages.parallelStream()
+                .filter(m -> !hash(m).equals(m.getMessageHash()))
+                .collect(Collectors.toList());
+    }
+
+    // Matches the regex class \s: space, tab, newline, vertical tab, form feed, carriage return
+    private static boolean isSpace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    private static void appendUpper(StringBuilder sb, String s, int from, int to, boolean asciiCaseRules) {
+        if (asciiCaseRules) {
+            int i = from;
+            while (i < to && s.charAt(i) < 0x80) {
+                i++;
+            }
+            if (i == to) {
+                for (int j = from; j < to; j++) {
+                    char c = s.charAt(j);
+                    sb.append(c >= 'a' && c <= 'z' ? (char) (c - 32) : c);
+                }
+                return;
+            }
+        }
+        // Non-ASCII text may change length when upper-cased, so defer to String's rules
+        sb.append(s.substring(from, to).toUpperCase());
+    }
+
+    // Turkish and Azerbaijani map 'i' to a dotted capital, so the ASCII shortcut does not apply
+    private static boolean asciiCaseRules() {
+        String language = Locale.getDefault().getLanguage();
+        return !language.equals("tr") && !language.equals("az");
+    }
+}
@@ -0,0 +1,145 @@
+package com.mycompany.chatapp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hands out unique 10-digit message IDs without a Random per call.
+// A global sequence is split into small per-thread ranges so concurrent senders rarely touch
+// shared state. The sequence high-water mark is persisted a block ahead of use, so after a
+// restart allocation resumes past every ID that could have been handed out before.
+// Sequence numbers go through a bijection on [0, 10^10) so IDs do not look sequential
+// and their first two digits (used in the message hash) stay spread out.
+public class MessageIdAllocator {
+
+    static final long ID_SPACE = 10_000_000_000L;
+    static final long RESERVE_BLOCK = 100_000;
+    static final int THREAD_RANGE = 64;
+
+    // Multiplier is coprime to 10^10 (odd, not a multiple of 5), so the mapping is one-to-one
+    private static final long MULTIPLIER = 7_919_000_003L;
+    private static final long OFFSET = 4_294_967_291L;
+
+    private final Path highWaterFile;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile long reservedUpTo;
+    private volatile boolean loaded;
+
+    // Next and end (exclusive) of the range owned by the current thread
+    private final ThreadLocal<long[]> threadRange = ThreadLocal.withInitial(() -> new long[]{0, 0});
+
+    public MessageIdAllocator(Path highWaterFile) {
+        this.highWaterFile = highWaterFile;
+    }
+
+    // Returns the next unused ID as exactly 10 digits
+    public String nextId() {
+        return format(nextSequence());
+    }
+
+    long nextSequence() {
+        long[] range = threadRange.get();
+        if (range[0] >= range[1]) {
+            if (!loaded) {
+                load();
+            }
+            long start = sequence.getAndAdd(THREAD_RANGE);
+            long end = start + THREAD_RANGE;
+            if (end > ID_SPACE) {
+                throw new IllegalStateException("Message ID space exhausted");
+            }
+            if (end > reservedUpTo) {
+                reserve(end);
+            }
+            range[0] = start;
+            range[1] = end;
+        }
+        return range[0]++;
+    }
+
+    // Resumes the sequence from the persisted mark
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        long mark = readHighWater();
+        sequence.accumulateAndGet(mark, Math::max);
+        reservedUpTo = mark;
+        loaded = true;
+    }
+
+    // Persists a new mark a block ahead so the next RESERVE_BLOCK IDs need no disk write
+    private synchronized void reserve(long needed) {
+        if (needed <= reservedUpTo) {
+            return;
+        }
+        long mark = Math.min(ID_SPACE, needed + RESERVE_BLOCK);
+        writeHighWater(mark);
+        reservedUpTo = mark;
+    }
+
+    static String format(long sequenceNumber) {
+        long scrambled = (mulMod(sequenceNumber, MULTIPLIER) + OFFSET) % ID_SPACE;
+        String digits = Long.toString(scrambled);
+        return "0000000000".substring(digits.length()) + digits;
+    }
+
+    // (a * b) mod 10^10 without overflow; both operands are below 10^10
+    private static long mulMod(long a, long b) {
+        long high = a / 100_000;
+        long low = a % 100_000;
+        return ((high * b % ID_SPACE) * 100_000 + low * b) % ID_SPACE;
+    }
+
+    private long readHighWater() {
+        try {
+            if (!Files.exists(highWaterFile)) {
+                return 0;
+            }
+            return Long.parseLong(new String(Files.readAllBytes(highWaterFile), StandardCharsets.US_ASCII).trim());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read message ID high-water mark", e);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Corrupt message ID high-water mark in " + highWaterFile, e);
+        }
+    }
+
+    // The mark is forced to disk before it replaces the old one, and the rename is forced too, so
+    // after a power loss the file holds either the old mark or the new one, never less
+    private void writeHighWater(long mark) {
+        try {
+            Path directory = highWaterFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = highWaterFile.resolveSibling(highWaterFile.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bytes = ByteBuffer.wrap(Long.toString(mark).getBytes(StandardCharsets.US_ASCII));
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, highWaterFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot persist message ID high-water mark", e);
+        }
+    }
+
+    // Makes the rename durable; some platforms (Windows) cannot open a directory, and there the
+    // move itself is as durable as it gets
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported here
+        }
+    }
+}
@@ -0,0 +1,591 @@
+package com.mycompany.chatapp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+// Append-only, log-structured store for messages saved to send later.
+// Records are appended to size-capped segment files and located through an in-memory
+// offset index; deleted records are dropped by background compaction of sealed segments.
+//
+// Record layout: [int length][int crc32][byte type][byte idLength][id bytes][payload bytes]
+// where length and crc32 cover everything after the crc field. The type byte is either a
+// tombstone or the format id of the MessageCodec that encoded the payload, so segments
+// written with JSON payloads still load after the default codec changed to binary.
+public class MessageLogStore {
+
+    static final byte TYPE_TOMBSTONE = 0;
+
+    static final int HEADER_BYTES = 8;
+    static final int MAX_ID_BYTES = 255;
+    static final long DEFAULT_MAX_SEGMENT_BYTES = 8L * 1024 * 1024;
+    static final double COMPACTION_THRESHOLD = 0.5;
+
+    private static final String SEGMENT_PREFIX = "segment_";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final MessageCodec codec;
+
+    // Segments ordered by id; the highest id is the active segment that receives appends
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Map<String, Location> index = new LinkedHashMap<>();
+    private Segment active;
+    private boolean opened;
+
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "message-log-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public MessageLogStore(Path directory) {
+        this(directory, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    public MessageLogStore(Path directory, long maxSegmentBytes) {
+        this(directory, maxSegmentBytes, BinaryMessageCodec.INSTANCE);
+    }
+
+    public MessageLogStore(Path directory, long maxSegmentBytes, MessageCodec codec) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.codec = codec;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Appends a message record and points the index at it
+    public synchronized void append(Message message) throws IOException {
+        open();
+        byte[] payload = codec.encode(message);
+        Location location = write(codec.formatId(), message.getMessageID(), payload);
+        Location previous = index.remove(message.getMessageID());
+        index.put(message.getMessageID(), location);
+        if (previous != null) {
+            markDead(previous);
+        }
+    }
+
+    // Appends several records with one gathering write per segment they land in, then points
+    // the index at them; this is the group commit path used by WriteBehindWriter
+    public synchronized void appendAll(List<Message> messages) throws IOException {
+        open();
+        List<ByteBuffer> run = new ArrayList<>();
+        List<String> runIDs = new ArrayList<>();
+        List<Location> runLocations = new ArrayList<>();
+        long runBytes = 0;
+        for (Message message : messages) {
+            byte[] record = record(codec.formatId(), message.getMessageID(), codec.encode(message));
+            long end = active.size + runBytes;
+            if (end > 0 && end + record.length > maxSegmentBytes) {
+                writeRun(run, runIDs, runLocations, runBytes);
+                runBytes = 0;
+                roll();
+            }
+            runLocations.add(new Location(active.id, (int) (active.size + runBytes), record.length));
+            runIDs.add(message.getMessageID());
+            run.add(ByteBuffer.wrap(record));
+            runBytes += record.length;
+        }
+        writeRun(run, runIDs, runLocations, runBytes);
+    }
+
+    // Appends a tombstone for the message ID; returns false if no live record existed
+    public synchronized boolean delete(String messageID) throws IOException {
+        open();
+        Location previous = index.remove(messageID);
+        if (previous == null) {
+            return false;
+        }
+        Location tombstone = write(TYPE_TOMBSTONE, messageID, new byte[0]);
+        markDead(previous);
+        markDead(tombstone);
+        scheduleCompaction();
+        return true;
+    }
+
+    // Reads the live record for a message ID, or returns null if none exists
+    public synchronized Message read(String messageID) throws IOException {
+        open();
+        Location location = index.get(messageID);
+        if (location == null) {
+            return null;
+        }
+        Segment segment = segments.get(location.segmentId);
+        ByteBuffer buffer = ByteBuffer.allocate(location.length);
+        readFully(segment.channel, buffer, location.offset);
+        buffer.flip();
+        return decode(buffer);
+    }
+
+    public synchronized boolean contains(String messageID) throws IOException {
+        open();
+        return index.containsKey(messageID);
+    }
+
+    public synchronized int size() throws IOException {
+        open();
+        return index.size();
+    }
+
+    // Text of the live record for a message ID, for messages opened from the manifest. A record
+    // deleted since the manifest was read is an error, never an empty body
+    String readBody(String messageID) throws IOException {
+        Message full = read(messageID);
+        if (full == null) {
+            throw new IOException("No stored record for message " + messageID);
+        }
+        return full.getMessage();
+    }
+
+    // Saves a manifest of the live records so the next start can skip decoding them. Every live
+    // record needs a matching message; returns false and removes any old manifest otherwise
+    public synchronized boolean writeManifest(Collection<Message> messages) throws IOException {
+        open();
+        Path file = directory.resolve(StoredMessageManifest.FILE_NAME);
+        Map<String, Message> byID = new HashMap<>();
+        for (Message m : messages) {
+            byID.put(m.getMessageID(), m);
+        }
+        List<StoredMessageManifest.Entry> entries = new ArrayList<>(index.size());
+        for (Map.Entry<String, Location> live : index.entrySet()) {
+            Message m = byID.get(live.getKey());
+            if (m == null) {
+                Files.deleteIfExists(file);
+                return false;
+            }
+            entries.add(new StoredMessageManifest.Entry(m.getMessageID(), m.getMessageNumber(), m.getRecipient(),
+                    m.getMessageHash(), m.getMessageLength(), FullTextIndex.termsOf(m).toArray(new String[0]),
+                    live.getValue()));
+        }
+        Map<Long, Long> sizes = new TreeMap<>();
+        for (Segment segment : segments.values()) {
+            segment.channel.force(false);
+            sizes.put(segment.id, segment.size);
+        }
+        new StoredMessageManifest(sizes, entries).write(file);
+        return true;
+    }
+
+    // Opens the store from its manifest without reading the segments and returns the stored
+    // messages with bodies left on disk. Returns null when the store is already open or the
+    // manifest is missing or out of date, in which case callers load the store normally
+    public synchronized List<Message> openFromManifest() throws IOException {
+        if (opened) {
+            return null;
+        }
+        StoredMessageManifest manifest = StoredMessageManifest.read(directory.resolve(StoredMessageManifest.FILE_NAME));
+        if (manifest == null || !manifest.getSegmentSizes().equals(segmentSizesOnDisk())) {
+            return null;
+        }
+        for (Map.Entry<Long, Long> entry : manifest.getSegmentSizes().entrySet()) {
+            long id = entry.getKey();
+            segments.put(id, new Segment(id, directory.resolve(segmentName(id))));
+        }
+        List<Message> messages = new ArrayList<>(manifest.getEntries().size());
+        for (StoredMessageManifest.Entry entry : manifest.getEntries()) {
+            index.put(entry.messageID, entry.location);
+            segments.get(entry.location.segmentId).liveBytes += entry.location.length;
+            messages.add(new Message(entry.messageID, entry.messageNumber, entry.recipient, entry.messageHash,
+                    entry.messageLength, entry.terms, this));
+        }
+        if (segments.isEmpty() || segments.lastEntry().getValue().size >= maxSegmentBytes) {
+            roll();
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        opened = true;
+        return messages;
+    }
+
+    // Returns the live messages in append order, decoded in parallel from the mapped segments
+    public List<Message> loadAll() throws IOException {
+        return new StoredMessageLoader().load(this).getMessages();
+    }
+
+    // Locations of every live record in the order the records were appended
+    synchronized List<Location> liveLocations() throws IOException {
+        open();
+        return new ArrayList<>(index.values());
+    }
+
+    // Maps the valid part of a segment read-only
+    synchronized MappedByteBuffer map(long segmentId) throws IOException {
+        Segment segment = segments.get(segmentId);
+        return segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+    }
+
+    // Forces appended records to disk
+    public synchronized void sync() throws IOException {
+        if (active != null) {
+            active.channel.force(false);
+        }
+    }
+
+    // Copies the live records out of sealed segments that are mostly dead, then removes them
+    public synchronized int compact() throws IOException {
+        open();
+        int compacted = 0;
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment == active || segment.size == 0 || segment.deadRatio() < COMPACTION_THRESHOLD) {
+                continue;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) segment.size);
+            readFully(segment.channel, buffer, 0);
+            buffer.flip();
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int start = buffer.position();
+                int length = buffer.getInt(start);
+                byte type = buffer.get(start + HEADER_BYTES);
+                String id = peekID(buffer, start);
+                Location location = index.get(id);
+                boolean live = location != null && location.segmentId == segment.id && location.offset == start;
+                // Tombstones must survive while an older segment still holds the record they delete
+                boolean keepTombstone = type == TYPE_TOMBSTONE && location == null && heldBefore(id, segment.id);
+                if (live || keepTombstone) {
+                    byte[] record = new byte[HEADER_BYTES + length];
+                    buffer.get(start, record);
+                    Location moved = writeRaw(record, type == TYPE_TOMBSTONE);
+                    if (live) {
+                        index.put(id, moved);
+                    }
+                }
+                buffer.position(start + HEADER_BYTES + length);
+            }
+            active.channel.force(false);
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+            segments.remove(segment.id);
+            compacted++;
+        }
+        return compacted;
+    }
+
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+        segments.clear();
+        index.clear();
+        active = null;
+        opened = false;
+    }
+
+    private Map<Long, Long> segmentSizesOnDisk() throws IOException {
+        Map<Long, Long> sizes = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return sizes;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                long id = segmentId(path);
+                if (id >= 0) {
+                    sizes.put(id, Files.size(path));
+                }
+            }
+        }
+        return sizes;
+    }
+
+    // Opens the directory and rebuilds the offset index from the segment headers
+    private void open() throws IOException {
+        if (opened) {
+            return;
+        }
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                long id = segmentId(path);
+                if (id >= 0) {
+                    segments.put(id, new Segment(id, path));
+                }
+            }
+        }
+        for (Segment segment : segments.values()) {
+            scan(segment, segment.id == segments.lastKey());
+        }
+        if (segments.isEmpty() || segments.lastEntry().getValue().size >= maxSegmentBytes) {
+            roll();
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        opened = true;
+    }
+
+    // Indexes the records of one segment, truncating a torn write at the tail of the newest segment
+    private void scan(Segment segment, boolean newest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) segment.size);
+        readFully(segment.channel, buffer, 0);
+        buffer.flip();
+        Set<String> ids = new HashSet<>();
+        int end = 0;
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length < 2 || start + HEADER_BYTES + length > buffer.limit() || !checksumMatches(buffer, start, length)) {
+                break;
+            }
+            byte type = buffer.get(start + HEADER_BYTES);
+            String id = peekID(buffer, start);
+            if (type != TYPE_TOMBSTONE) {
+                ids.add(id);
+            }
+            Location location = new Location(segment.id, start, HEADER_BYTES + length);
+            segment.liveBytes += location.length;
+            Location previous = index.remove(id);
+            if (previous != null) {
+                markDead(previous);
+            }
+            if (type == TYPE_TOMBSTONE) {
+                markDead(location);
+            } else {
+                index.put(id, location);
+            }
+            end = start + HEADER_BYTES + length;
+            buffer.position(end);
+        }
+        if (end < segment.size && newest) {
+            segment.channel.truncate(end);
+        }
+        segment.size = end;
+        segment.recordIDs = ids;
+    }
+
+    // True if a segment older than the given one holds a message record for the ID
+    private boolean heldBefore(String messageID, long segmentId) throws IOException {
+        for (Segment older : segments.headMap(segmentId).values()) {
+            if (recordIDs(older).contains(messageID)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // IDs with a message record in the segment, read from disk for segments opened from the manifest
+    private Set<String> recordIDs(Segment segment) throws IOException {
+        if (segment.recordIDs == null) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) segment.size);
+            readFully(segment.channel, buffer, 0);
+            buffer.flip();
+            Set<String> ids = new HashSet<>();
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int start = buffer.position();
+                if (buffer.get(start + HEADER_BYTES) != TYPE_TOMBSTONE) {
+                    ids.add(peekID(buffer, start));
+                }
+                buffer.position(start + HEADER_BYTES + buffer.getInt(start));
+            }
+            segment.recordIDs = ids;
+        }
+        return segment.recordIDs;
+    }
+
+    private Location write(byte type, String messageID, byte[] payload) throws IOException {
+        return writeRaw(record(type, messageID, payload), false);
+    }
+
+    private static byte[] record(byte type, String messageID, byte[] payload) {
+        byte[] id = messageID.getBytes(StandardCharsets.UTF_8);
+        // The ID length is stored in one byte, so longer IDs would not read back
+        if (id.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Message ID is longer than " + MAX_ID_BYTES + " bytes: " + messageID);
+        }
+        int length = 2 + id.length + payload.length;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+        record.putInt(length).putInt(0).put(type).put((byte) id.length).put(id).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_BYTES, length);
+        record.putInt(4, (int) crc.getValue());
+        return record.array();
+    }
+
+    // Writes consecutive records to the end of the active segment and indexes them once they are written
+    private void writeRun(List<ByteBuffer> run, List<String> ids, List<Location> locations, long bytes) throws IOException {
+        if (run.isEmpty()) {
+            return;
+        }
+        ByteBuffer[] buffers = run.toArray(new ByteBuffer[0]);
+        active.channel.position(active.size);
+        long written = 0;
+        while (written < bytes) {
+            written += active.channel.write(buffers);
+        }
+        active.size += bytes;
+        active.liveBytes += bytes;
+        if (active.recordIDs != null) {
+            active.recordIDs.addAll(ids);
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            Location previous = index.remove(ids.get(i));
+            index.put(ids.get(i), locations.get(i));
+            if (previous != null) {
+                markDead(previous);
+            }
+        }
+        run.clear();
+        ids.clear();
+        locations.clear();
+    }
+
+    private Location writeRaw(byte[] record, boolean dead) throws IOException {
+        if (active.size > 0 && active.size + record.length > maxSegmentBytes) {
+            roll();
+        }
+        long offset = active.size;
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            active.channel.write(buffer, active.size + buffer.position());
+        }
+        active.size += record.length;
+        active.liveBytes += record.length;
+        Location location = new Location(active.id, (int) offset, record.length);
+        if (record[HEADER_BYTES] != TYPE_TOMBSTONE && active.recordIDs != null) {
+            active.recordIDs.add(peekID(ByteBuffer.wrap(record), 0));
+        }
+        if (dead) {
+            markDead(location);
+        }
+        return location;
+    }
+
+    // Seals the active segment and starts a new one
+    private void roll() throws IOException {
+        if (active != null) {
+            // sync() only forces the active segment, so make the sealed one durable now
+            active.channel.force(false);
+        }
+        long id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Path path = directory.resolve(segmentName(id));
+        Segment segment = new Segment(id, path);
+        segment.recordIDs = new HashSet<>();
+        segments.put(id, segment);
+        active = segment;
+    }
+
+    private synchronized void compactInBackground() {
+        // A store closed after scheduling must not be reopened by the compactor
+        if (!opened) {
+            return;
+        }
+        try {
+            compact();
+        } catch (IOException e) {
+            // Compaction is retried on the next delete; the log stays readable meanwhile
+        }
+    }
+
+    private void markDead(Location location) {
+        Segment segment = segments.get(location.segmentId);
+        if (segment != null) {
+            segment.liveBytes -= location.length;
+        }
+    }
+
+    private void scheduleCompaction() {
+        for (Segment segment : segments.values()) {
+            if (segment != active && segment.deadRatio() >= COMPACTION_THRESHOLD) {
+                compactor.execute(this::compactInBackground);
+                return;
+            }
+        }
+    }
+
+    static Message decode(ByteBuffer record) {
+        int start = record.position();
+        byte type = record.get(start + HEADER_BYTES);
+        int idLength = record.get(start + HEADER_BYTES + 1) & 0xFF;
+        int payloadStart = start + HEADER_BYTES + 2 + idLength;
+        return MessageCodec.forFormat(type).decode(record.duplicate().position(payloadStart));
+    }
+
+    static String peekID(ByteBuffer buffer, int start) {
+        int idLength = buffer.get(start + HEADER_BYTES + 1) & 0xFF;
+        byte[] id = new byte[idLength];
+        buffer.get(start + HEADER_BYTES + 2, id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    static boolean checksumMatches(ByteBuffer buffer, int start, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start + HEADER_BYTES).limit(start + HEADER_BYTES + length));
+        return (int) crc.getValue() == buffer.getInt(start + 4);
+    }
+
+    private static String segmentName(long id) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX);
+    }
+
+    static long segmentId(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+    }
+
+    // Position of a live record inside a segment
+    static final class Location {
+        final long segmentId;
+        final int offset;
+        final int length;
+
+        Location(long segmentId, int offset, int length) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    static final class Segment {
+        final long id;
+        final Path path;
+        final FileChannel channel;
+        long size;
+        long liveBytes;
+        // IDs with a message record here, live or not; null until the segment has been read
+        Set<String> recordIDs;
+
+        Segment(long id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = channel.size();
+        }
+
+        double deadRatio() {
+            return size == 0 ? 0 : (double) (size - liveBytes) / size;
+        }
+    }
+}
@@ -0,0 +1,576 @@
+package com.mycompany.chatapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Keeps sent, stored and disregarded messages with hash indexes so that lookups,
+// inserts and deletes by message ID, message hash or recipient run in O(1) expected time.
+//
+// The registry is safe to share between threads without a global lock. Every message gets a
+// sequence number that orders it, indexes are concurrent maps of sequence-ordered buckets, and
+// counters are LongAdders. Changes to one message lock only the stripe that message hashes to,
+// so senders on different cores rarely meet. Snapshots lock every stripe in order, which makes
+// them consistent across all indexes.
+//
+// Other components (statistics, extra indexes) follow changes through a Listener, which is
+// called under the same lock as the change so it sees each message's events in order.
+//
+// Given a MessageArena, the registry keeps the text of every sent message there rather than as
+// a String on the message, and frees the entry when the message is removed, by hash or otherwise.
+public class MessageRegistry {
+
+    public enum Kind {
+        SENT,
+        STORED
+    }
+
+    // Told about every add and remove; implementations must be thread-safe and quick, since
+    // they run on the caller's thread while the message's stripe is locked
+    public interface Listener {
+        void added(Kind kind, Message message, long sequence);
+
+        void removed(Kind kind, Message message, long sequence);
+
+        // Every message of this kind was dropped at once
+        void cleared(Kind kind);
+    }
+
+    static final int STRIPES = 16;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Sent messages ordered by sequence, plus the sequence each one was registered under
+    private final ConcurrentSkipListMap<Long, Message> sentMessages = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Message, Long> sentSequence = new ConcurrentHashMap<>();
+
+    // Indexes over sent messages (IDs and hashes are not guaranteed unique, so each key maps to a bucket)
+    private final ConcurrentMap<String, ConcurrentSkipListMap<Long, Message>> sentByID = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentSkipListMap<Long, Message>> sentByHash = new ConcurrentHashMap<>();
+    // Recipients are keyed by their RecipientNumber, so lookups neither box nor hash Strings
+    private final LongHashMap<ConcurrentSkipListMap<Long, Message>> sentByRecipient = new LongHashMap<>();
+
+    // Stored messages and their indexes
+    private final ConcurrentSkipListMap<Long, Message> storedMessages = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Message, Long> storedSequence = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Message> storedByID = new ConcurrentHashMap<>();
+    private final LongHashMap<ConcurrentSkipListMap<Long, Message>> storedByRecipient = new LongHashMap<>();
+
+    private final ConcurrentLinkedQueue<Message> disregardedMessages = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder sentSize = new LongAdder();
+    private final LongAdder storedSize = new LongAdder();
+    private final LongAdder totalSent = new LongAdder();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Holds the text of sent messages, or null to leave it on the messages
+    private final MessageArena sentArena;
+
+    public MessageRegistry() {
+        this(null);
+    }
+
+    public MessageRegistry(MessageArena sentArena) {
+        this.sentArena = sentArena;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // Registers a listener and replays the messages already present to it as additions
+    public void addListener(Listener listener) {
+        lockAll();
+        try {
+            for (Map.Entry<Long, Message> entry : sentMessages.entrySet()) {
+                listener.added(Kind.SENT, entry.getValue(), entry.getKey());
+            }
+            for (Map.Entry<Long, Message> entry : storedMessages.entrySet()) {
+                listener.added(Kind.STORED, entry.getValue(), entry.getKey());
+            }
+            listeners.add(listener);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Adds a message to the sent set and all sent indexes
+    public void addSent(Message message) {
+        ReentrantLock lock = stripeFor(message);
+        lock.lock();
+        try {
+            if (sentSequence.containsKey(message)) {
+                return;
+            }
+            long seq = sequence.incrementAndGet();
+            sentSequence.put(message, seq);
+            sentMessages.put(seq, message);
+            index(sentByID, message.getMessageID(), seq, message);
+            index(sentByHash, message.getMessageHash(), seq, message);
+            index(sentByRecipient, message.getRecipientNumber(), seq, message);
+            sentSize.increment();
+            totalSent.increment();
+            if (sentArena != null) {
+                message.retainIn(sentArena);
+            }
+            fireAdded(Kind.SENT, message, seq);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removes a specific sent message, returns false if it was not registered
+    public boolean removeSent(Message message) {
+        ReentrantLock lock = stripeFor(message);
+        lock.lock();
+        try {
+            Long seq = sentSequence.remove(message);
+            if (seq == null) {
+                return false;
+            }
+            sentMessages.remove(seq);
+            unindex(sentByID, message.getMessageID(), seq);
+            unindex(sentByHash, message.getMessageHash(), seq);
+            unindex(sentByRecipient, message.getRecipientNumber(), seq);
+            sentSize.decrement();
+            message.release();
+            fireRemoved(Kind.SENT, message, seq);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removes the oldest sent message with the given hash and returns it, or null if none matched
+    public Message removeSentByHash(String messageHash) {
+        while (true) {
+            Message message = findSentByHash(messageHash);
+            if (message == null || removeSent(message)) {
+                return message;
+            }
+            // Another thread removed it first; try the next oldest
+        }
+    }
+
+    // Returns the oldest sent message with the given ID, or null
+    public Message findSentByID(String messageID) {
+        return first(get(sentByID, messageID));
+    }
+
+    // Returns the oldest sent message with the given hash, or null
+    public Message findSentByHash(String messageHash) {
+        return first(get(sentByHash, messageHash));
+    }
+
+    public boolean containsSent(Message message) {
+        return sentSequence.containsKey(message);
+    }
+
+    public boolean containsMessageID(String messageID) {
+        return messageID != null && (sentByID.containsKey(messageID) || storedByID.containsKey(messageID));
+    }
+
+    public boolean containsMessageHash(String messageHash) {
+        return messageHash != null && sentByHash.containsKey(messageHash);
+    }
+
+    // Consistent snapshot of sent messages in send order
+    public List<Message> getSentMessages() {
+        lockAll();
+        try {
+            return new ArrayList<>(sentMessages.values());
+        } finally {
+            unlockAll();
+        }
+    }
+
+    // Live view of sent messages in send order for streaming; iterating copies nothing and never
+    // blocks senders, and messages sent or deleted meanwhile may or may not be seen
+    public Iterable<Message> sentCursor() {
+        return Collections.unmodifiableCollection(sentMessages.values());
+    }
+
+    // Up to limit sent messages registered after the given sequence; pass 0 for the first page
+    // and the previous page's last sequence for the next one
+    public Page sentPage(long afterSequence, int limit) {
+        List<Message> messages = new ArrayList<>(Math.min(limit, 1024));
+        long first = 0;
+        long last = afterSequence;
+        for (Map.Entry<Long, Message> entry : sentMessages.tailMap(afterSequence, false).entrySet()) {
+            if (messages.size() == limit) {
+                return new Page(messages, first, last, true);
+            }
+            if (messages.isEmpty()) {
+                first = entry.getKey();
+            }
+            messages.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new Page(messages, first, last, false);
+    }
+
+    public int sentCount() {
+        return sentSize.intValue();
+    }
+
+    // Number of messages sent since the registry was created or cleared; deletes do not lower it
+    public long totalSent() {
+        return totalSent.sum();
+    }
+
+    // Corrects the lifetime sent count after restoring messages sent in an earlier run
+    void adjustTotalSent(long delta) {
+        totalSent.add(delta);
+    }
+
+    // Adds a stored message, replacing any earlier stored copy with the same ID
+    public void addStored(Message message) {
+        ReentrantLock lock = stripeFor(message.getMessageID());
+        lock.lock();
+        try {
+            Message previous = storedByID.put(message.getMessageID(), message);
+            if (previous != null) {
+                unlinkStored(previous);
+            }
+            long seq = sequence.incrementAndGet();
+            storedSequence.put(message, seq);
+            storedMessages.put(seq, message);
+            index(storedByRecipient, message.getRecipientNumber(), seq, message);
+            storedSize.increment();
+            fireAdded(Kind.STORED, message, seq);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removes the stored message with the given ID and returns it, or null
+    public Message removeStored(String messageID) {
+        ReentrantLock lock = stripeFor(messageID);
+        lock.lock();
+        try {
+            Message message = storedByID.remove(messageID);
+            if (message != null) {
+                unlinkStored(message);
+            }
+            return message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Message findStoredByID(String messageID) {
+        return messageID == null ? null : storedByID.get(messageID);
+    }
+
+    // Consistent snapshot of stored messages in load/store order
+    public List<Message> getStoredMessages() {
+        lockAll();
+        try {
+            return new ArrayList<>(storedMessages.values());
+        } finally {
+            unlockAll();
+        }
+    }
+
+    // Live view of stored messages in load/store order for streaming, like sentCursor()
+    public Iterable<Message> storedCursor() {
+        return Collections.unmodifiableCollection(storedMessages.values());
+    }
+
+    public int storedCount() {
+        return storedSize.intValue();
+    }
+
+    public void clearStored() {
+        lockAll();
+        try {
+            storedMessages.clear();
+            storedSequence.clear();
+            storedByID.clear();
+            storedByRecipient.clear();
+            storedSize.reset();
+            for (Listener listener : listeners) {
+                listener.cleared(Kind.STORED);
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    public void addDisregarded(Message message) {
+        disregardedMessages.add(message);
+    }
+
+    public List<Message> getDisregardedMessages() {
+        return new ArrayList<>(disregardedMessages);
+    }
+
+    // Returns the sent messages followed by the stored messages for a recipient
+    public List<Message> findByRecipient(String recipient) {
+        return findByRecipient(RecipientNumber.encode(recipient));
+    }
+
+    public List<Message> findByRecipient(long recipientNumber) {
+        List<Message> found = new ArrayList<>();
+        if (recipientNumber != RecipientNumber.NONE) {
+            addAll(found, sentByRecipient.get(recipientNumber));
+            addAll(found, storedByRecipient.get(recipientNumber));
+        }
+        return found;
+    }
+
+    // Verifies the hash of every sent and stored message in parallel and returns how many were
+    // stale; with repair set, they are replaced as repairHashes() describes
+    public int rehashAll(boolean repair) {
+        if (repair) {
+            return repairHashes().size();
+        }
+        List<Message> all = getSentMessages();
+        all.addAll(getStoredMessages());
+        return MessageHasher.verifyAll(all).size();
+    }
+
+    // Replaces every message whose hash is stale with a copy carrying the recomputed hash, in the
+    // same place, and returns the copies. Listeners see the old message removed and the copy added,
+    // so the journal logs the change; stored copies still have to be written to the store
+    public List<Message> repairHashes() {
+        List<Message> all = getSentMessages();
+        all.addAll(getStoredMessages());
+        List<Message> stale = MessageHasher.verifyAll(all);
+        List<Message> repaired = new ArrayList<>(stale.size());
+        if (stale.isEmpty()) {
+            return repaired;
+        }
+        lockAll();
+        try {
+            for (Message m : stale) {
+                Message copy = replace(m);
+                if (copy != null) {
+                    repaired.add(copy);
+                }
+            }
+        } finally {
+            unlockAll();
+        }
+        return repaired;
+    }
+
+    // Swaps a registered message for its rehashed copy under the same sequence; null if it was
+    // removed since it was found stale. Callers hold every stripe lock
+    private Message replace(Message message) {
+        Long seq = sentSequence.remove(message);
+        if (seq != null) {
+            Message copy = message.withRecomputedHash();
+            sentSequence.put(copy, seq);
+            sentMessages.put(seq, copy);
+            index(sentByID, copy.getMessageID(), seq, copy);
+            unindex(sentByHash, message.getMessageHash(), seq);
+            index(sentByHash, copy.getMessageHash(), seq, copy);
+            index(sentByRecipient, copy.getRecipientNumber(), seq, copy);
+            message.release();
+            if (sentArena != null) {
+                copy.retainIn(sentArena);
+            }
+            fireRemoved(Kind.SENT, message, seq);
+            fireAdded(Kind.SENT, copy, seq);
+            return copy;
+        }
+        seq = storedSequence.remove(message);
+        if (seq != null) {
+            Message copy = message.withRecomputedHash();
+            storedByID.put(copy.getMessageID(), copy);
+            storedSequence.put(copy, seq);
+            storedMessages.put(seq, copy);
+            index(storedByRecipient, copy.getRecipientNumber(), seq, copy);
+            fireRemoved(Kind.STORED, message, seq);
+            fireAdded(Kind.STORED, copy, seq);
+            return copy;
+        }
+        return null;
+    }
+
+    // Empties every collection and index and resets the counters
+    public void clear() {
+        lockAll();
+        try {
+            for (Message message : sentMessages.values()) {
+                message.release();
+            }
+            sentMessages.clear();
+            sentSequence.clear();
+            sentByID.clear();
+            sentByHash.clear();
+            sentByRecipient.clear();
+            sentSize.reset();
+            totalSent.reset();
+            for (Listener listener : listeners) {
+                listener.cleared(Kind.SENT);
+            }
+            clearStored();
+            disregardedMessages.clear();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    private void unlinkStored(Message message) {
+        Long seq = storedSequence.remove(message);
+        if (seq != null) {
+            storedMessages.remove(seq);
+            unindex(storedByRecipient, message.getRecipientNumber(), seq);
+            storedSize.decrement();
+            fireRemoved(Kind.STORED, message, seq);
+        }
+    }
+
+    private void fireAdded(Kind kind, Message message, long seq) {
+        for (Listener listener : listeners) {
+            listener.added(kind, message, seq);
+        }
+    }
+
+    private void fireRemoved(Kind kind, Message message, long seq) {
+        for (Listener listener : listeners) {
+            listener.removed(kind, message, seq);
+        }
+    }
+
+    // Messages lock by identity (Message does not override hashCode); stored IDs lock by value
+    private ReentrantLock stripeFor(Object key) {
+        int h = key == null ? 0 : key instanceof Message ? System.identityHashCode(key) : key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    // Bucket changes go through compute so an emptied bucket is never dropped while another
+    // thread is adding to it. Concurrent maps cannot hold null keys, so null fields are not indexed.
+    private static void index(ConcurrentMap<String, ConcurrentSkipListMap<Long, Message>> index,
+            String key, long seq, Message message) {
+        if (key == null) {
+            return;
+        }
+        index.compute(key, (k, bucket) -> {
+            if (bucket == null) {
+                bucket = new ConcurrentSkipListMap<>();
+            }
+            bucket.put(seq, message);
+            return bucket;
+        });
+    }
+
+    private static void unindex(ConcurrentMap<String, ConcurrentSkipListMap<Long, Message>> index,
+            String key, long seq) {
+        if (key == null) {
+            return;
+        }
+        index.computeIfPresent(key, (k, bucket) -> {
+            bucket.remove(seq);
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+
+    private static void index(LongHashMap<ConcurrentSkipListMap<Long, Message>> index,
+            long key, long seq, Message message) {
+        if (key == RecipientNumber.NONE) {
+            return;
+        }
+        index.compute(key, bucket -> {
+            if (bucket == null) {
+                bucket = new ConcurrentSkipListMap<>();
+            }
+            bucket.put(seq, message);
+            return bucket;
+        });
+    }
+
+    private static void unindex(LongHashMap<ConcurrentSkipListMap<Long, Message>> index, long key, long seq) {
+        if (key == RecipientNumber.NONE) {
+            return;
+        }
+        index.compute(key, bucket -> {
+            if (bucket == null) {
+                return null;
+            }
+            bucket.remove(seq);
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+
+    private static ConcurrentSkipListMap<Long, Message> get(
+            ConcurrentMap<String, ConcurrentSkipListMap<Long, Message>> index, String key) {
+        return key == null ? null : index.get(key);
+    }
+
+    private static Message first(ConcurrentSkipListMap<Long, Message> bucket) {
+        if (bucket == null) {
+            return null;
+        }
+        Map.Entry<Long, Message> entry = bucket.firstEntry();
+        return entry == null ? null : entry.getValue();
+    }
+
+    private static void addAll(List<Message> out, ConcurrentSkipListMap<Long, Message> bucket) {
+        if (bucket != null) {
+            out.addAll(bucket.values());
+        }
+    }
+
+    // One page of messages plus the cursor positions needed to move to the next page
+    public static final class Page {
+        private final List<Message> messages;
+        private final long firstSequence;
+        private final long lastSequence;
+        private final boolean hasMore;
+
+        Page(List<Message> messages, long firstSequence, long lastSequence, boolean hasMore) {
+            this.messages = Collections.unmodifiableList(messages);
+            this.firstSequence = firstSequence;
+            this.lastSequence = lastSequence;
+            this.hasMore = hasMore;
+        }
+
+        public List<Message> getMessages() {
+            return messages;
+        }
+
+        public long getFirstSequence() {
+            return firstSequence;
+        }
+
+        public long getLastSequence() {
+            return lastSequence;
+        }
+
+        public boolean hasMore() {
+            return hasMore;
+        }
+
+        public boolean isEmpty() {
+            return messages.isEmpty();
+        }
+    }
+}
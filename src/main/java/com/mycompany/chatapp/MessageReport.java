@@ -0,0 +1,146 @@
+package com.mycompany.chatapp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+// Renders sent-message reports by streaming rows from a registry cursor straight to a Writer.
+// Nothing is collected first, so memory use stays the same for ten messages or ten million,
+// and the same rows back the paged dialogs in the menu and file exports in any format.
+public class MessageReport {
+
+    public enum Type {
+        SENDER_RECIPIENT("Sender and Recipient of Sent Messages:\n"),
+        FULL("Full Sent Messages Report:\n\n");
+
+        private final String title;
+
+        Type(String title) {
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    public enum Format {
+        TEXT,
+        CSV,
+        NDJSON
+    }
+
+    private final MessageRegistry registry;
+
+    public MessageReport(MessageRegistry registry) {
+        this.registry = registry;
+    }
+
+    // Writes the whole report of sent messages and returns the number of rows written
+    public long write(Type type, Format format, Writer out) throws IOException {
+        return write(type, format, registry.sentCursor(), out);
+    }
+
+    // Writes a report over any sequence of messages, such as one page
+    public static long write(Type type, Format format, Iterable<Message> messages, Writer out) throws IOException {
+        writeHeader(type, format, out);
+        long rows = 0;
+        for (Message m : messages) {
+            writeRow(type, format, m, out);
+            rows++;
+        }
+        out.flush();
+        return rows;
+    }
+
+    // Number of pages needed to show total rows, at least one
+    public static int pageCount(int total, int pageSize) {
+        return Math.max(1, (total + pageSize - 1) / pageSize);
+    }
+
+    private static void writeHeader(Type type, Format format, Writer out) throws IOException {
+        switch (format) {
+            case TEXT:
+                out.write(type.getTitle());
+                break;
+            case CSV:
+                out.write(type == Type.FULL
+                        ? "messageID,messageHash,recipient,message\r\n"
+                        : "sender,recipient\r\n");
+                break;
+            default:
+                // NDJSON has no header line
+                break;
+        }
+    }
+
+    private static void writeRow(Type type, Format format, Message m, Writer out) throws IOException {
+        try {
+            writeFields(type, format, m, out);
+        } catch (UncheckedIOException e) {
+            // A stored body that can no longer be read fails the report like any other write error
+            throw e.getCause();
+        }
+    }
+
+    private static void writeFields(Type type, Format format, Message m, Writer out) throws IOException {
+        switch (format) {
+            case TEXT:
+                if (type == Type.FULL) {
+                    out.write(m.printMessage());
+                    out.write("\n\n");
+                } else {
+                    out.write("Sender: Me\nRecipient: ");
+                    out.write(String.valueOf(m.getRecipient()));
+                    out.write("\n\n");
+                }
+                break;
+            case CSV:
+                if (type == Type.FULL) {
+                    writeCsvField(m.getMessageID(), out);
+                    out.write(',');
+                    writeCsvField(m.getMessageHash(), out);
+                    out.write(',');
+                    writeCsvField(m.getRecipient(), out);
+                    out.write(',');
+                    writeCsvField(m.getMessage(), out);
+                } else {
+                    out.write("Me,");
+                    writeCsvField(m.getRecipient(), out);
+                }
+                out.write("\r\n");
+                break;
+            default:
+                JsonMessageCodec.INSTANCE.write(m, out);
+                out.write('\n');
+                break;
+        }
+    }
+
+    // Quotes a field when it holds a separator, quote or line break, doubling any quotes (RFC 4180)
+    static void writeCsvField(String value, Writer out) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                out.write(value, start, i + 1 - start);
+                out.write('"');
+                start = i + 1;
+            }
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+    }
+}
@@ -0,0 +1,261 @@
+package com.mycompany.chatapp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Headless API for sending and storing messages. Batches are queued on a bounded submission
+// queue and worker threads validate each message, check its hash and insert it into the
+// registry. Stored messages go through a write-behind writer that persists them in groups,
+// and they enter the registry once written. Submitters block while the queue is full, which
+// keeps bulk senders from outrunning the workers. The Swing menu in Message is one client of
+// this service. Every send and store is timed under the "send" and "store" operations of its
+// Metrics; a store is timed until its write completes.
+public class MessageService implements AutoCloseable {
+
+    static final int DEFAULT_BATCH_SIZE = 256;
+    static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private final MessageRegistry registry;
+    private final WriteBehindWriter writer;
+    private final int batchSize;
+    private final ThreadPoolExecutor workers;
+    private final Metrics metrics;
+    private final Metrics.Operation sendTimer;
+    private final Metrics.Operation storeTimer;
+
+    public MessageService(MessageRegistry registry, MessageLogStore store) {
+        this(registry, store, WriteBehindWriter.Durability.BATCH);
+    }
+
+    public MessageService(MessageRegistry registry, MessageLogStore store, WriteBehindWriter.Durability durability) {
+        this(registry, new WriteBehindWriter(store, durability), Runtime.getRuntime().availableProcessors(),
+                DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    public MessageService(MessageRegistry registry, MessageLogStore store, int workerCount, int queueCapacity, int batchSize) {
+        this(registry, new WriteBehindWriter(store, WriteBehindWriter.Durability.BATCH), workerCount, queueCapacity, batchSize);
+    }
+
+    public MessageService(MessageRegistry registry, WriteBehindWriter writer, int workerCount, int queueCapacity, int batchSize) {
+        this(registry, writer, workerCount, queueCapacity, batchSize, new Metrics());
+    }
+
+    public MessageService(MessageRegistry registry, WriteBehindWriter writer, int workerCount, int queueCapacity, int batchSize,
+            Metrics metrics) {
+        this.registry = registry;
+        this.metrics = metrics;
+        this.sendTimer = metrics.operation("send");
+        this.storeTimer = metrics.operation("store");
+        this.writer = writer;
+        this.batchSize = batchSize;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "message-service-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                (task, executor) -> {
+                    // Block the submitter until a slot frees up instead of dropping the batch
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Message service is closed");
+                    }
+                    try {
+                        executor.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while queueing messages", e);
+                    }
+                });
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    // Validates and sends the messages; results come back in the same order as the input
+    public CompletableFuture<List<SendResult>> send(List<Message> messages) {
+        return submit(messages, false);
+    }
+
+    // Validates the messages and queues them for the message store to send later; the future
+    // completes once they are written as durably as the writer's policy asks
+    public CompletableFuture<List<SendResult>> store(List<Message> messages) {
+        return submit(messages, true);
+    }
+
+    // Completes once every store submitted so far has been written
+    public CompletableFuture<Void> flush() {
+        return writer.flush();
+    }
+
+    // Removes a stored message from the message store and the registry; returns false if it was
+    // not stored
+    public boolean deleteStored(String messageID) throws IOException {
+        boolean deleted = writer.delete(messageID);
+        return registry.removeStored(messageID) != null || deleted;
+    }
+
+    // Repairs stale hashes in the registry and writes the repaired stored messages back to the
+    // store; the journal records the sent ones itself. Completes with how many were repaired
+    public CompletableFuture<Integer> repairHashes() {
+        List<Message> repaired = registry.repairHashes();
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (Message message : repaired) {
+            if (registry.findStoredByID(message.getMessageID()) == message) {
+                writes.add(writer.write(message));
+            }
+        }
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).thenApply(done -> repaired.size());
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    // Disregarded messages are only kept in memory
+    public void disregard(Message message) {
+        registry.addDisregarded(message);
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+    }
+
+    private CompletableFuture<List<SendResult>> submit(List<Message> messages, boolean persist) {
+        List<CompletableFuture<List<SendResult>>> batches = new ArrayList<>();
+        for (int from = 0; from < messages.size(); from += batchSize) {
+            List<Message> batch = messages.subList(from, Math.min(from + batchSize, messages.size()));
+            batches.add(CompletableFuture.supplyAsync(() -> process(batch, persist), workers).thenCompose(done -> done));
+        }
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<SendResult> results = new ArrayList<>(messages.size());
+            for (CompletableFuture<List<SendResult>> batch : batches) {
+                results.addAll(batch.join());
+            }
+            return Collections.unmodifiableList(results);
+        });
+    }
+
+    private CompletableFuture<List<SendResult>> process(List<Message> batch, boolean persist) {
+        if (!persist) {
+            List<SendResult> results = new ArrayList<>(batch.size());
+            for (Message message : batch) {
+                results.add(sendOne(message));
+            }
+            return CompletableFuture.completedFuture(results);
+        }
+        List<CompletableFuture<SendResult>> pending = new ArrayList<>(batch.size());
+        for (Message message : batch) {
+            pending.add(storeOne(message));
+        }
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<SendResult> results = new ArrayList<>(pending.size());
+            for (CompletableFuture<SendResult> result : pending) {
+                results.add(result.join());
+            }
+            return results;
+        });
+    }
+
+    private SendResult sendOne(Message message) {
+        long start = System.nanoTime();
+        SendResult invalid = validate(message);
+        if (invalid != null) {
+            sendTimer.record(start, false);
+            return invalid;
+        }
+        registry.addSent(message);
+        sendTimer.record(start);
+        return new SendResult(message, Status.SENT, "Message sent.");
+    }
+
+    private CompletableFuture<SendResult> storeOne(Message message) {
+        long start = System.nanoTime();
+        SendResult invalid = validate(message);
+        if (invalid != null) {
+            storeTimer.record(start, false);
+            return CompletableFuture.completedFuture(invalid);
+        }
+        return writer.write(message).handle((written, error) -> {
+            if (error != null) {
+                storeTimer.record(start, false);
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                return new SendResult(message, Status.FAILED, "Error saving message: " + cause.getMessage());
+            }
+            registry.addStored(message);
+            storeTimer.record(start);
+            return new SendResult(message, Status.STORED, "Message stored.");
+        });
+    }
+
+    // Returns a failed result, or null if the message may be sent or stored
+    private static SendResult validate(Message message) {
+        switch (Validators.checkMessage(message)) {
+            case OK:
+                break;
+            case MESSAGE_TOO_LONG:
+                return new SendResult(message, Status.MESSAGE_TOO_LONG, message.validateMessageLength());
+            case INVALID_MESSAGE_ID:
+                return new SendResult(message, Status.HASH_MISMATCH, "Message ID or hash does not match the message.");
+            default:
+                return new SendResult(message, Status.INVALID_RECIPIENT,
+                        "Cell phone number is incorrectly formatted or does not contain an international code.");
+        }
+        if (!message.createMessageHash().equals(message.getMessageHash())) {
+            return new SendResult(message, Status.HASH_MISMATCH, "Message ID or hash does not match the message.");
+        }
+        return null;
+    }
+
+    public enum Status {
+        SENT,
+        STORED,
+        INVALID_RECIPIENT,
+        MESSAGE_TOO_LONG,
+        HASH_MISMATCH,
+        FAILED
+    }
+
+    // Outcome of sending or storing one message
+    public static final class SendResult {
+        private final Message message;
+        private final Status status;
+        private final String detail;
+
+        SendResult(Message message, Status status, String detail) {
+            this.message = message;
+            this.status = status;
+            this.detail = detail;
+        }
+
+        public Message getMessage() {
+            return message;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        public boolean isSuccess() {
+            return status == Status.SENT || status == Status.STORED;
+        }
+    }
+}
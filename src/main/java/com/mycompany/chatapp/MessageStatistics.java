@@ -0,0 +1,150 @@
+package com.mycompany.chatapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+// Aggregates over sent and stored messages that are kept up to date on every send, store and
+// delete instead of being recomputed by scanning the registry.
+// Messages are ranked by length in a sorted set rather than a bounded heap, so removing one of
+// the longest simply promotes the next; the longest k are read in O(k) and updates cost
+// O(log n). Per-recipient counts (primitive, keyed by RecipientNumber) and the length histogram
+// are O(1) to update and read.
+public class MessageStatistics implements MessageRegistry.Listener {
+
+    // Width in characters of each length histogram bucket; the last bucket also takes anything longer
+    static final int HISTOGRAM_BUCKET_WIDTH = 25;
+    static final int HISTOGRAM_BUCKETS = Validators.MAX_MESSAGE_LENGTH / HISTOGRAM_BUCKET_WIDTH + 1;
+
+    private final Map<MessageRegistry.Kind, Aggregate> aggregates = new EnumMap<>(MessageRegistry.Kind.class);
+
+    public MessageStatistics(MessageRegistry registry) {
+        for (MessageRegistry.Kind kind : MessageRegistry.Kind.values()) {
+            aggregates.put(kind, new Aggregate());
+        }
+        registry.addListener(this);
+    }
+
+    // The longest message of the given kind (the earliest one on a tie), or null if there are none
+    public Message longest(MessageRegistry.Kind kind) {
+        Iterator<Ranked> it = aggregates.get(kind).byLength.iterator();
+        return it.hasNext() ? it.next().message : null;
+    }
+
+    // The longest message of the given kind that the filter accepts, or null
+    public Message longest(MessageRegistry.Kind kind, Predicate<Message> filter) {
+        for (Ranked ranked : aggregates.get(kind).byLength) {
+            if (filter.test(ranked.message)) {
+                return ranked.message;
+            }
+        }
+        return null;
+    }
+
+    // Up to k messages of the given kind, longest first
+    public List<Message> topLongest(MessageRegistry.Kind kind, int k) {
+        List<Message> top = new ArrayList<>(Math.min(k, 64));
+        Iterator<Ranked> it = aggregates.get(kind).byLength.iterator();
+        while (top.size() < k && it.hasNext()) {
+            top.add(it.next().message);
+        }
+        return top;
+    }
+
+    public long recipientCount(MessageRegistry.Kind kind, String recipient) {
+        return recipientCount(kind, RecipientNumber.encode(recipient));
+    }
+
+    public long recipientCount(MessageRegistry.Kind kind, long recipient) {
+        return recipient == RecipientNumber.NONE ? 0 : aggregates.get(kind).byRecipient.get(recipient);
+    }
+
+    // Snapshot of message counts per recipient, with the numbers turned back into Strings for display
+    public Map<String, Long> recipientCounts(MessageRegistry.Kind kind) {
+        Map<String, Long> counts = new HashMap<>();
+        aggregates.get(kind).byRecipient.forEach((recipient, count) -> counts.put(RecipientNumber.decode(recipient), count));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    // Message counts by length; bucket i holds lengths [i * width, (i + 1) * width)
+    public long[] lengthHistogram(MessageRegistry.Kind kind) {
+        AtomicLongArray buckets = aggregates.get(kind).histogram;
+        long[] copy = new long[buckets.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = buckets.get(i);
+        }
+        return copy;
+    }
+
+    @Override
+    public void added(MessageRegistry.Kind kind, Message message, long sequence) {
+        Aggregate aggregate = aggregates.get(kind);
+        int length = lengthOf(message);
+        aggregate.byLength.add(new Ranked(length, sequence, message));
+        if (message.getRecipientNumber() != RecipientNumber.NONE) {
+            aggregate.byRecipient.add(message.getRecipientNumber(), 1);
+        }
+        aggregate.histogram.incrementAndGet(bucketOf(length));
+    }
+
+    @Override
+    public void removed(MessageRegistry.Kind kind, Message message, long sequence) {
+        Aggregate aggregate = aggregates.get(kind);
+        int length = lengthOf(message);
+        if (!aggregate.byLength.remove(new Ranked(length, sequence, message))) {
+            return;
+        }
+        if (message.getRecipientNumber() != RecipientNumber.NONE) {
+            aggregate.byRecipient.add(message.getRecipientNumber(), -1);
+        }
+        aggregate.histogram.decrementAndGet(bucketOf(length));
+    }
+
+    @Override
+    public void cleared(MessageRegistry.Kind kind) {
+        Aggregate aggregate = aggregates.get(kind);
+        aggregate.byLength.clear();
+        aggregate.byRecipient.clear();
+        for (int i = 0; i < aggregate.histogram.length(); i++) {
+            aggregate.histogram.set(i, 0);
+        }
+    }
+
+    static int bucketOf(int length) {
+        return Math.min(length / HISTOGRAM_BUCKET_WIDTH, HISTOGRAM_BUCKETS - 1);
+    }
+
+    // Stored messages opened from the manifest know their length without reading the body
+    private static int lengthOf(Message message) {
+        return message.getMessageLength();
+    }
+
+    // Aggregates for one kind of message
+    private static final class Aggregate {
+        // Longest first, then oldest first; the registry sequence keeps entries unique
+        final ConcurrentSkipListSet<Ranked> byLength = new ConcurrentSkipListSet<>(
+                Comparator.comparingInt((Ranked r) -> -r.length).thenComparingLong(r -> r.sequence));
+        final LongCounterMap byRecipient = new LongCounterMap();
+        final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    }
+
+    private static final class Ranked {
+        final int length;
+        final long sequence;
+        final Message message;
+
+        Ranked(int length, long sequence, Message message) {
+            this.length = length;
+            this.sequence = sequence;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.mycompany.chatapp;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Counters and latency histograms for every timed operation (send, store, load, each menu
+// query). Callers take System.nanoTime() before the work and hand it to Operation.record
+// afterwards, which costs a few atomic adds. The numbers can be read three ways: through JMX
+// (one MXBean per operation plus this registry, under com.mycompany.chatapp:type=Metrics),
+// as a text table from dump(), or directly from the Operation objects.
+public class Metrics implements MetricsMXBean {
+
+    static final String DOMAIN = "com.mycompany.chatapp";
+
+    public interface OperationMXBean {
+        long getCount();
+
+        long getErrors();
+
+        double getMeanMicros();
+
+        double getP50Micros();
+
+        double getP90Micros();
+
+        double getP99Micros();
+
+        double getP999Micros();
+
+        double getMaxMicros();
+
+        void reset();
+    }
+
+    private final ConcurrentMap<String, Operation> operations = new ConcurrentHashMap<>();
+    private volatile MBeanServer server;
+    // Why the registry or an operation could not be published over JMX, or null if all were
+    private volatile String jmxFailure;
+
+    // The operation with this name, created on first use
+    public Operation operation(String name) {
+        Operation existing = operations.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        return operations.computeIfAbsent(name, n -> {
+            Operation created = new Operation(n);
+            MBeanServer registeredWith = server;
+            if (registeredWith != null) {
+                register(registeredWith, created);
+            }
+            return created;
+        });
+    }
+
+    // Publishes the registry and every operation, including ones created later, to the platform MBean
+    // server. Returns false if the registry could not be published; getJmxFailure() says why.
+    public synchronized boolean registerMBeans() {
+        if (server != null) {
+            return true;
+        }
+        MBeanServer platform = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Metrics");
+            if (!platform.isRegistered(name)) {
+                platform.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            jmxFailure = "Metrics are not available over JMX: " + e.getMessage();
+            return false;
+        }
+        server = platform;
+        for (Operation operation : operations.values()) {
+            register(platform, operation);
+        }
+        return true;
+    }
+
+    // The last JMX registration failure, or null if there was none
+    public String getJmxFailure() {
+        return jmxFailure;
+    }
+
+    @Override
+    public String[] getOperationNames() {
+        return new TreeMap<>(operations).keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public String getDump() {
+        return dump();
+    }
+
+    // One line per operation, sorted by name, with latencies in milliseconds
+    public String dump() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "%-24s %10s %8s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "mean ms", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map.Entry<String, Operation> entry : new TreeMap<>(operations).entrySet()) {
+            Operation op = entry.getValue();
+            sb.append(String.format(Locale.ROOT, "%-24s %10d %8d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                    entry.getKey(), op.getCount(), op.getErrors(), op.getMeanMicros() / 1000,
+                    op.getP50Micros() / 1000, op.getP99Micros() / 1000, op.getP999Micros() / 1000,
+                    op.getMaxMicros() / 1000));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (Operation operation : operations.values()) {
+            operation.reset();
+        }
+    }
+
+    private void register(MBeanServer server, Operation operation) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Metrics,name=" + ObjectName.quote(operation.name));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(operation, name);
+            }
+        } catch (JMException e) {
+            jmxFailure = "Metrics for " + operation.name + " are not available over JMX: " + e.getMessage();
+        }
+    }
+
+    // Calls and latencies of one named operation; errors are counted and also timed
+    public static final class Operation implements OperationMXBean {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // Records a successful call that started at startNanos (from System.nanoTime())
+        public void record(long startNanos) {
+            latency.record(System.nanoTime() - startNanos);
+        }
+
+        public void record(long startNanos, boolean success) {
+            record(startNanos);
+            if (!success) {
+                errors.increment();
+            }
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        @Override
+        public long getCount() {
+            return latency.getCount();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return latency.getMean() / 1000;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return latency.getValueAtPercentile(50) / 1000.0;
+        }
+
+        @Override
+        public double getP90Micros() {
+            return latency.getValueAtPercentile(90) / 1000.0;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return latency.getValueAtPercentile(99) / 1000.0;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return latency.getValueAtPercentile(99.9) / 1000.0;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return latency.getMax() / 1000.0;
+        }
+
+        @Override
+        public void reset() {
+            latency.reset();
+            errors.reset();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.mycompany.chatapp;
+
+// JMX view of Metrics: the operations being timed and the same table as Metrics.dump()
+public interface MetricsMXBean {
+    String[] getOperationNames();
+
+    String getDump();
+
+    void reset();
+}
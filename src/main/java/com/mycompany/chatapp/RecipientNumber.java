@@ -0,0 +1,36 @@
+package com.mycompany.chatapp;
+
+// Recipients as primitive longs. A valid South African cell number (+27 and 9 digits, see
+// Validators.checkPhone) is encoded as its 11 digits, so +27834557896 becomes 27834557896 and
+// decoding rebuilds exactly the same String. Anything else encodes to NONE: nothing is remembered
+// about strings that are not numbers, so lookups with arbitrary text cannot grow memory, and a
+// message with an invalid recipient keeps the String it was given (see Message.getRecipient).
+public final class RecipientNumber {
+
+    public static final long NONE = 0;
+
+    private RecipientNumber() {
+    }
+
+    // Parses the recipient without allocating; null and invalid numbers give NONE
+    public static long encode(String recipient) {
+        if (recipient == null || !Validators.checkPhone(recipient).isValid()) {
+            return NONE;
+        }
+        long number = 27;
+        for (int i = 3; i < 12; i++) {
+            number = number * 10 + (recipient.charAt(i) - '0');
+        }
+        return number;
+    }
+
+    // The String form, rebuilt for display and for the file formats
+    public static String decode(long number) {
+        return number == NONE ? null : "+" + number;
+    }
+
+    // True for numbers that passed Validators.checkPhone when they were encoded
+    public static boolean isValid(long number) {
+        return number != NONE;
+    }
+}
@@ -5,19 +5,53 @@ public class Registration {
     
     private static boolean loggedIn = false;
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws java.io.IOException {
         
+        // "--server [port]" serves many users over a local socket instead of the dialogs
+        if (args.length > 0 && args[0].equals("--server")) {
+            ChatServer.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // "--import-users <users.csv> [rejections.csv]" registers every valid row of a CSV file
+        if (args.length > 0 && args[0].equals("--import-users")) {
+            UserImporter.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // "--messages import|export <messages.ndjson> [sent|stored]" moves messages in or out in bulk
+        if (args.length > 0 && args[0].equals("--messages")) {
+            MessageBulkTransfer.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        
+        // Users registered in earlier runs can log in with the passwords they chose then
+        try {
+            Login.users.load();
+        } catch (java.io.IOException e) {
+            JOptionPane.showMessageDialog(null, "Error reading registered users: " + e.getMessage());
+        }
+
         // Create a Login object to handle user registration and login
         Login user = new Login();
         
         // Start the registration process by collecting input from the user
         user.welcomeInput();
         
-        // Display a message to the user after registration attempt
-        JOptionPane.showMessageDialog(null, user.registerUser());
-        
         // Request and validate the user's cellphone number
         user.returnCellPhoneNumber();
+
+        // Ask for the password and keep only a salted hash of it in the user directory
+        JOptionPane.showMessageDialog(null, user.registerUser());
+        if (user.getRegistration().isValid() && Login.users.isUnreadable()) {
+            // Saving now would replace every user in the file that could not be read with this one
+            JOptionPane.showMessageDialog(null, "Registered for this session only: the saved users could not be read, "
+                    + "so they were not overwritten.");
+        } else if (user.getRegistration().isValid()) {
+            try {
+                Login.users.save();
+            } catch (java.io.IOException e) {
+                JOptionPane.showMessageDialog(null, "Error saving registered users: " + e.getMessage());
+            }
+        }
         
         JOptionPane.showMessageDialog(null, user.returnLoginStatus());
         
@@ -0,0 +1,626 @@
+package com.mycompany.chatapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Keeps sent messages across restarts with a write-ahead log and periodic snapshots.
+// The journal listens to the registry and logs a record for every send, delete and clear.
+// Each record carries a log sequence number (LSN); a sent message is known by the LSN of the
+// record that added it. The listener only numbers the record and queues it, so a send never
+// waits for disk I/O while it holds a registry lock. One journal thread writes everything queued
+// with a single write (group commit), forces the log when sync() asks, and every
+// SNAPSHOT_INTERVAL records copies the live set, starts a new log file and hands the copy to a
+// background snapshot writer, after which older log files are deleted. Recovery loads the
+// snapshot and replays only the log records after it, so startup time depends on the number of
+// live messages and the interval, not the history.
+//
+// A write that fails stops the journal from writing further records, since the log would have a
+// gap. The registry and its indexes are unaffected; sync() and snapshot() report the failure.
+//
+// Log record layout: [int length][int crc32][byte type][long lsn][payload], where length and
+// crc32 cover everything after the crc field. ADD payloads are binary-encoded messages and
+// REMOVE payloads are the LSN of the ADD being undone. A torn record at the tail is truncated.
+public class SentMessageJournal implements MessageRegistry.Listener, AutoCloseable {
+
+    static final byte TYPE_ADD = 1;
+    static final byte TYPE_REMOVE = 2;
+    static final byte TYPE_CLEAR = 3;
+
+    static final int HEADER_BYTES = 8;
+    static final int DEFAULT_SNAPSHOT_INTERVAL = 50_000;
+
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final String LOG_PREFIX = "wal_";
+    private static final String LOG_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int snapshotInterval;
+
+    // Live sent messages by the LSN that added them, and the reverse lookup by identity
+    private final TreeMap<Long, Message> live = new TreeMap<>();
+    private final Map<Message, Long> keys = new IdentityHashMap<>();
+
+    // Guarded by this: numbering, the live set and the records waiting for the journal thread
+    private long lastLsn;
+    private long totalSent;
+    private long recordsSinceSnapshot;
+    private List<Record> queued = new ArrayList<>();
+    private long syncRequestedLsn;
+    private long snapshotRequests;
+    private long snapshotsStarted;
+    private boolean closing;
+    private IOException failure;
+
+    // Written records and forced LSN, also guarded by this
+    private long writtenLsn;
+    private long syncedLsn;
+
+    // Used only by the journal thread once recovery has finished
+    private FileChannel log;
+    private long logSize;
+    private Thread writer;
+
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sent-journal-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+    private Future<?> pendingSnapshot;
+
+    public SentMessageJournal(Path directory) {
+        this(directory, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    public SentMessageJournal(Path directory, int snapshotInterval) {
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    // Rebuilds the sent messages from disk into the registry, then starts journaling its changes
+    public synchronized RecoveryResult recover(MessageRegistry registry) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        long snapshotLsn = readSnapshot();
+        long replayed = 0;
+        List<Path> logs = logFiles();
+        for (int i = 0; i < logs.size(); i++) {
+            replayed += replay(logs.get(i), snapshotLsn, i == logs.size() - 1);
+        }
+
+        for (Message m : live.values()) {
+            registry.addSent(m);
+        }
+        registry.adjustTotalSent(totalSent - live.size());
+
+        openLog(logs.isEmpty() ? null : logs.get(logs.size() - 1));
+        writtenLsn = lastLsn;
+        syncedLsn = lastLsn;
+        // A long replay means the snapshot is stale; take a new one with the next record
+        recordsSinceSnapshot = replayed;
+        writer = new Thread(this::run, "sent-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        // Recovered messages already have LSNs, so only messages sent before recovery get journaled here
+        registry.addListener(this);
+        return new RecoveryResult(live.size(), replayed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public synchronized void added(MessageRegistry.Kind kind, Message message, long sequence) {
+        if (kind != MessageRegistry.Kind.SENT || keys.containsKey(message)) {
+            return;
+        }
+        long lsn = queue(TYPE_ADD, message, 0);
+        live.put(lsn, message);
+        keys.put(message, lsn);
+        totalSent++;
+    }
+
+    @Override
+    public synchronized void removed(MessageRegistry.Kind kind, Message message, long sequence) {
+        if (kind != MessageRegistry.Kind.SENT) {
+            return;
+        }
+        Long key = keys.remove(message);
+        if (key == null) {
+            return;
+        }
+        live.remove(key);
+        queue(TYPE_REMOVE, null, key);
+    }
+
+    @Override
+    public synchronized void cleared(MessageRegistry.Kind kind) {
+        if (kind != MessageRegistry.Kind.SENT) {
+            return;
+        }
+        live.clear();
+        keys.clear();
+        totalSent = 0;
+        queue(TYPE_CLEAR, null, 0);
+    }
+
+    // Waits until every record logged so far is written and forced to disk
+    public void sync() throws IOException {
+        synchronized (this) {
+            long target = lastLsn;
+            syncRequestedLsn = Math.max(syncRequestedLsn, target);
+            notifyAll();
+            while (syncedLsn < target && failure == null && writer != null && writer.isAlive()) {
+                awaitWriter();
+            }
+            if (failure != null) {
+                throw new IOException("Sent message journal stopped writing", failure);
+            }
+        }
+    }
+
+    // Writes a snapshot of the live messages now and waits for it
+    public void snapshot() throws IOException {
+        Future<?> written;
+        synchronized (this) {
+            long ticket = ++snapshotRequests;
+            notifyAll();
+            while (snapshotsStarted < ticket && failure == null && writer != null && writer.isAlive()) {
+                awaitWriter();
+            }
+            if (failure != null) {
+                throw new IOException("Sent message journal stopped writing", failure);
+            }
+            written = pendingSnapshot;
+        }
+        if (written != null) {
+            // The snapshot writer runs one snapshot at a time, so this one covers every earlier record
+            await(written);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Thread thread;
+        synchronized (this) {
+            closing = true;
+            notifyAll();
+            thread = writer;
+        }
+        if (thread != null) {
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Future<?> last;
+        synchronized (this) {
+            last = pendingSnapshot;
+        }
+        if (last != null) {
+            await(last);
+        }
+        snapshotter.shutdown();
+        synchronized (this) {
+            if (failure != null) {
+                throw new IOException("Sent message journal stopped writing", failure);
+            }
+        }
+    }
+
+    // Numbers a record and hands it to the journal thread; called with the monitor held
+    private long queue(byte type, Message message, long key) {
+        long lsn = ++lastLsn;
+        if (failure != null || closing) {
+            // Nothing will write it; the live set still follows the registry
+            return lsn;
+        }
+        queued.add(new Record(type, lsn, message, key));
+        recordsSinceSnapshot++;
+        if (queued.size() == 1) {
+            notifyAll();
+        }
+        return lsn;
+    }
+
+    // The journal thread: writes queued records in groups, forces the log and starts snapshots
+    private void run() {
+        while (true) {
+            List<Record> batch;
+            boolean force;
+            boolean stop;
+            TreeMap<Long, Message> copy = null;
+            long snapshotLsn = 0;
+            long total = 0;
+            long requests;
+            synchronized (this) {
+                while (!hasWork()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Only close() stops the journal thread
+                    }
+                }
+                requests = snapshotRequests;
+                batch = queued;
+                queued = new ArrayList<>();
+                stop = closing;
+                force = stop || syncRequestedLsn > syncedLsn;
+                if (failure == null && (requests > snapshotsStarted || recordsSinceSnapshot >= snapshotInterval)) {
+                    // Taken with the batch, so the copy holds exactly the records up to lastLsn
+                    copy = new TreeMap<>(live);
+                    snapshotLsn = lastLsn;
+                    total = totalSent;
+                    recordsSinceSnapshot = 0;
+                }
+            }
+
+            long written = batch.isEmpty() ? -1 : batch.get(batch.size() - 1).lsn;
+            IOException error = null;
+            if (!hasFailed()) {
+                try {
+                    write(batch);
+                    if (copy != null) {
+                        log.force(false);
+                        log.close();
+                        openLog(directory.resolve(logName(snapshotLsn + 1)));
+                    } else if (force) {
+                        log.force(false);
+                    }
+                    if (stop) {
+                        log.close();
+                    }
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            if (stop && (error != null || hasFailed())) {
+                try {
+                    log.close();
+                } catch (IOException e) {
+                    // Already failed; the failure is what gets reported
+                }
+            }
+
+            synchronized (this) {
+                if (error != null && failure == null) {
+                    failure = error;
+                }
+                if (failure == null) {
+                    if (written > 0) {
+                        writtenLsn = written;
+                    }
+                    if (force || copy != null) {
+                        syncedLsn = writtenLsn;
+                    }
+                    if (copy != null) {
+                        TreeMap<Long, Message> messages = copy;
+                        long lsn = snapshotLsn;
+                        long sentTotal = total;
+                        pendingSnapshot = snapshotter.submit(() -> {
+                            writeSnapshot(messages, lsn, sentTotal);
+                            deleteLogsBefore(lsn + 1);
+                            return null;
+                        });
+                    }
+                }
+                snapshotsStarted = requests;
+                notifyAll();
+                if (stop) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private synchronized boolean hasFailed() {
+        return failure != null;
+    }
+
+    // True when the journal thread has something to do; after a failure only closing counts
+    private boolean hasWork() {
+        if (closing) {
+            return true;
+        }
+        return failure == null && (!queued.isEmpty() || syncRequestedLsn > syncedLsn
+                || snapshotRequests > snapshotsStarted || recordsSinceSnapshot >= snapshotInterval);
+    }
+
+    // Encodes a group of records into one buffer and writes it with as few calls as the OS allows
+    private void write(List<Record> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<byte[]> payloads = new ArrayList<>(batch.size());
+        int size = 0;
+        for (Record record : batch) {
+            byte[] payload = record.payload();
+            payloads.add(payload);
+            size += HEADER_BYTES + 9 + payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < batch.size(); i++) {
+            byte[] payload = payloads.get(i);
+            int start = buffer.position();
+            int length = 1 + 8 + payload.length;
+            buffer.putInt(length).putInt(0).put(batch.get(i).type).putLong(batch.get(i).lsn).put(payload);
+            crc.reset();
+            crc.update(buffer.array(), start + HEADER_BYTES, length);
+            buffer.putInt(start + 4, (int) crc.getValue());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            logSize += log.write(buffer, logSize);
+        }
+    }
+
+    // Waits for the journal thread to report progress; called with the monitor held
+    private void awaitWriter() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the sent message journal", e);
+        }
+    }
+
+    private void openLog(Path path) throws IOException {
+        if (path == null) {
+            path = directory.resolve(logName(lastLsn + 1));
+        }
+        log = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        logSize = log.size();
+    }
+
+    private void writeSnapshot(TreeMap<Long, Message> messages, long lsn, long total) throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), crc));
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(lsn);
+            out.writeLong(total);
+            out.writeInt(messages.size());
+            for (Map.Entry<Long, Message> entry : messages.entrySet()) {
+                byte[] encoded = BinaryMessageCodec.INSTANCE.encode(entry.getValue());
+                out.writeLong(entry.getKey());
+                out.writeInt(encoded.length);
+                out.write(encoded);
+            }
+            out.flush();
+            // The checksum itself goes after the checked bytes
+            ByteBuffer checksum = ByteBuffer.allocate(8).putLong(crc.getValue());
+            checksum.flip();
+            while (checksum.hasRemaining()) {
+                channel.write(checksum);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Loads the snapshot into the live set and returns the LSN it covers, or 0 without one
+    private long readSnapshot() throws IOException {
+        Path path = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        try (DataInputStream raw = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc));
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported sent message snapshot version " + version);
+            }
+            long lsn = in.readLong();
+            long total = in.readLong();
+            int count = in.readInt();
+            TreeMap<Long, Message> messages = new TreeMap<>();
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                byte[] encoded = new byte[in.readInt()];
+                in.readFully(encoded);
+                messages.put(key, BinaryMessageCodec.INSTANCE.decode(ByteBuffer.wrap(encoded)));
+            }
+            if (raw.readLong() != crc.getValue()) {
+                throw new IOException("Sent message snapshot is corrupt: " + path);
+            }
+            for (Map.Entry<Long, Message> entry : messages.entrySet()) {
+                live.put(entry.getKey(), entry.getValue());
+                keys.put(entry.getValue(), entry.getKey());
+            }
+            lastLsn = lsn;
+            totalSent = total;
+            return lsn;
+        }
+    }
+
+    // Applies the records of one log file newer than the snapshot; returns how many were applied
+    private long replay(Path path, long snapshotLsn, boolean newest) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            int end = 0;
+            long applied = 0;
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int start = buffer.position();
+                int length = buffer.getInt(start);
+                if (length < 9 || start + HEADER_BYTES + length > buffer.limit() || !checksumMatches(buffer, start, length)) {
+                    break;
+                }
+                byte type = buffer.get(start + HEADER_BYTES);
+                long lsn = buffer.getLong(start + HEADER_BYTES + 1);
+                int payload = start + HEADER_BYTES + 9;
+                end = start + HEADER_BYTES + length;
+                buffer.position(end);
+                if (lsn <= snapshotLsn) {
+                    continue;
+                }
+                lastLsn = Math.max(lastLsn, lsn);
+                applied++;
+                if (type == TYPE_ADD) {
+                    Message m = BinaryMessageCodec.INSTANCE.decode(buffer.duplicate().position(payload).limit(end));
+                    live.put(lsn, m);
+                    keys.put(m, lsn);
+                    totalSent++;
+                } else if (type == TYPE_REMOVE) {
+                    Message m = live.remove(buffer.getLong(payload));
+                    if (m != null) {
+                        keys.remove(m);
+                    }
+                } else if (type == TYPE_CLEAR) {
+                    live.clear();
+                    keys.clear();
+                    totalSent = 0;
+                }
+            }
+            if (end < channel.size() && newest) {
+                channel.truncate(end);
+            }
+            return applied;
+        }
+    }
+
+    private List<Path> logFiles() throws IOException {
+        TreeMap<Long, Path> logs = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    logs.put(Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length())), path);
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        return new ArrayList<>(logs.values());
+    }
+
+    // Removes log files whose records are all covered by the snapshot
+    private void deleteLogsBefore(long firstLsn) throws IOException {
+        for (Path path : logFiles()) {
+            String name = path.getFileName().toString();
+            long start = Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length()));
+            if (start < firstLsn) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static String logName(long firstLsn) {
+        return String.format("%s%016d%s", LOG_PREFIX, firstLsn, LOG_SUFFIX);
+    }
+
+    private static boolean checksumMatches(ByteBuffer buffer, int start, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start + HEADER_BYTES).limit(start + HEADER_BYTES + length));
+        return (int) crc.getValue() == buffer.getInt(start + 4);
+    }
+
+    // One log record waiting to be written; messages are encoded by the journal thread
+    private static final class Record {
+        final byte type;
+        final long lsn;
+        final Message message;
+        final long key;
+
+        Record(byte type, long lsn, Message message, long key) {
+            this.type = type;
+            this.lsn = lsn;
+            this.message = message;
+            this.key = key;
+        }
+
+        byte[] payload() {
+            switch (type) {
+                case TYPE_ADD:
+                    return BinaryMessageCodec.INSTANCE.encode(message);
+                case TYPE_REMOVE:
+                    return ByteBuffer.allocate(8).putLong(key).array();
+                default:
+                    return new byte[0];
+            }
+        }
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the sent message snapshot", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Cannot write the sent message snapshot", e.getCause());
+        }
+    }
+
+    // Outcome of recovering sent messages at startup
+    public static final class RecoveryResult {
+        private final int messages;
+        private final long recordsReplayed;
+        private final long elapsedMillis;
+
+        RecoveryResult(int messages, long recordsReplayed, long elapsedMillis) {
+            this.messages = messages;
+            this.recordsReplayed = recordsReplayed;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getMessages() {
+            return messages;
+        }
+
+        public long getRecordsReplayed() {
+            return recordsReplayed;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Recovered " + messages + " sent messages (" + recordsReplayed + " log records replayed) in "
+                    + elapsedMillis + " ms";
+        }
+    }
+}
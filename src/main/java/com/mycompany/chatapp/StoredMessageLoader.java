@@ -0,0 +1,153 @@
+package com.mycompany.chatapp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+// Bulk loader for stored messages: segments and files are memory-mapped with FileChannel.map
+// and their records are decoded in parallel on a fork-join pool. Each task writes into its own
+// slots of a pre-sized array, so results are merged without any shared locking.
+public class StoredMessageLoader {
+
+    // Records per leaf task; below this splitting costs more than it saves
+    static final int SEQUENTIAL_THRESHOLD = 512;
+
+    private final ForkJoinPool pool;
+
+    public StoredMessageLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public StoredMessageLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Decodes every live record of the store, keeping append order
+    public LoadResult load(MessageLogStore store) throws IOException {
+        long start = System.nanoTime();
+        Message[] messages;
+        // Holding the store lock keeps compaction from removing a segment while it is mapped
+        synchronized (store) {
+            List<MessageLogStore.Location> locations = store.liveLocations();
+            Map<Long, MappedByteBuffer> mapped = new HashMap<>();
+            for (MessageLogStore.Location location : locations) {
+                if (!mapped.containsKey(location.segmentId)) {
+                    mapped.put(location.segmentId, store.map(location.segmentId));
+                }
+            }
+            messages = decodeAll(locations.size(), i -> {
+                MessageLogStore.Location location = locations.get(i);
+                ByteBuffer record = mapped.get(location.segmentId).duplicate();
+                record.position(location.offset).limit(location.offset + location.length);
+                return MessageLogStore.decode(record);
+            });
+        }
+        return new LoadResult(Arrays.asList(messages), messages.length, System.nanoTime() - start);
+    }
+
+    // Maps and parses standalone JSON message files in parallel; unreadable files are skipped
+    public LoadResult loadJsonFiles(List<Path> files) {
+        long start = System.nanoTime();
+        Message[] messages = decodeJsonFiles(files);
+        List<Message> loaded = new ArrayList<>(messages.length);
+        for (Message m : messages) {
+            if (m != null) {
+                loaded.add(m);
+            }
+        }
+        return new LoadResult(loaded, messages.length, System.nanoTime() - start);
+    }
+
+    // Parses each file into the matching slot of the result; a file that cannot be read leaves null
+    Message[] decodeJsonFiles(List<Path> files) {
+        return decodeAll(files.size(), i -> {
+            try (FileChannel channel = FileChannel.open(files.get(i), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return Message.fromJson(StandardCharsets.UTF_8.decode(buffer).toString());
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        });
+    }
+
+    private Message[] decodeAll(int count, IntFunction<Message> decoder) {
+        Message[] out = new Message[count];
+        if (count > 0) {
+            pool.invoke(new DecodeTask(decoder, out, 0, count));
+        }
+        return out;
+    }
+
+    // Splits the index range in halves until it is small enough to decode directly
+    private static final class DecodeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IntFunction<Message> decoder;
+        private final Message[] out;
+        private final int from;
+        private final int to;
+
+        DecodeTask(IntFunction<Message> decoder, Message[] out, int from, int to) {
+            this.decoder = decoder;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    out[i] = decoder.apply(i);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new DecodeTask(decoder, out, from, mid), new DecodeTask(decoder, out, mid, to));
+        }
+    }
+
+    // Messages produced by a load and how long it took
+    public static final class LoadResult {
+        private final List<Message> messages;
+        private final int recordsRead;
+        private final long elapsedNanos;
+
+        LoadResult(List<Message> messages, int recordsRead, long elapsedNanos) {
+            this.messages = Collections.unmodifiableList(Objects.requireNonNull(messages));
+            this.recordsRead = recordsRead;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<Message> getMessages() {
+            return messages;
+        }
+
+        public int getRecordsRead() {
+            return recordsRead;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return "Loaded " + messages.size() + " stored messages in " + getElapsedMillis() + " ms";
+        }
+    }
+}
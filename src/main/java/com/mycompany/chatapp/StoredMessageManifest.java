@@ -0,0 +1,149 @@
+package com.mycompany.chatapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Compact summary of the message store that lets startup skip decoding every record.
+// It holds the ID, number, recipient, hash, body length, distinct words and record location of
+// each live stored message, plus the size of every segment when it was written. The length and
+// words let the statistics and full-text index take in every message without reading a body. The manifest is only trusted while the
+// segments still have exactly those sizes; any later append, delete or compaction changes them
+// and the store falls back to a full scan.
+//
+// Layout: [int version][int segments]([long id][long size])*[int entries]
+// ([utf id][int number][bool hasRecipient][utf recipient][utf hash][int bodyLength]
+//  [int words]([utf word])*[long segment][int offset][int length])*
+// followed by the CRC32 of everything before it.
+final class StoredMessageManifest {
+
+    static final String FILE_NAME = "manifest.dat";
+    // Version 1 manifests had no lengths or words; they are ignored and the store is scanned
+    private static final int VERSION = 2;
+
+    private final Map<Long, Long> segmentSizes;
+    private final List<Entry> entries;
+
+    StoredMessageManifest(Map<Long, Long> segmentSizes, List<Entry> entries) {
+        this.segmentSizes = Collections.unmodifiableMap(new TreeMap<>(segmentSizes));
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    Map<Long, Long> getSegmentSizes() {
+        return segmentSizes;
+    }
+
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    // Writes to a temporary file and renames it so a crash never leaves half a manifest
+    void write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream raw = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc));
+            out.writeInt(VERSION);
+            out.writeInt(segmentSizes.size());
+            for (Map.Entry<Long, Long> segment : segmentSizes.entrySet()) {
+                out.writeLong(segment.getKey());
+                out.writeLong(segment.getValue());
+            }
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.messageID);
+                out.writeInt(entry.messageNumber);
+                out.writeBoolean(entry.recipient != null);
+                out.writeUTF(entry.recipient == null ? "" : entry.recipient);
+                out.writeUTF(entry.messageHash == null ? "" : entry.messageHash);
+                out.writeInt(entry.messageLength);
+                out.writeInt(entry.terms.length);
+                for (String term : entry.terms) {
+                    out.writeUTF(term);
+                }
+                out.writeLong(entry.location.segmentId);
+                out.writeInt(entry.location.offset);
+                out.writeInt(entry.location.length);
+            }
+            out.flush();
+            new DataOutputStream(raw).writeLong(crc.getValue());
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Reads a manifest, or returns null if it is missing, from another version or damaged
+    static StoredMessageManifest read(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        try (DataInputStream raw = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc));
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            Map<Long, Long> sizes = new TreeMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                sizes.put(in.readLong(), in.readLong());
+            }
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                int number = in.readInt();
+                boolean hasRecipient = in.readBoolean();
+                String recipient = in.readUTF();
+                String hash = in.readUTF();
+                int length = in.readInt();
+                String[] terms = new String[in.readInt()];
+                for (int t = 0; t < terms.length; t++) {
+                    terms[t] = in.readUTF();
+                }
+                MessageLogStore.Location location = new MessageLogStore.Location(in.readLong(), in.readInt(), in.readInt());
+                entries.add(new Entry(id, number, hasRecipient ? recipient : null, hash, length, terms, location));
+            }
+            if (raw.readLong() != crc.getValue()) {
+                return null;
+            }
+            return new StoredMessageManifest(sizes, entries);
+        } catch (IOException e) {
+            // Includes a truncated file; a full scan rebuilds everything the manifest would have given
+            return null;
+        }
+    }
+
+    static final class Entry {
+        final String messageID;
+        final int messageNumber;
+        final String recipient;
+        final String messageHash;
+        final int messageLength;
+        final String[] terms;
+        final MessageLogStore.Location location;
+
+        Entry(String messageID, int messageNumber, String recipient, String messageHash, int messageLength,
+                String[] terms, MessageLogStore.Location location) {
+            this.messageID = messageID;
+            this.messageNumber = messageNumber;
+            this.recipient = recipient;
+            this.messageHash = messageHash;
+            this.messageLength = messageLength;
+            this.terms = terms;
+            this.location = location;
+        }
+    }
+}
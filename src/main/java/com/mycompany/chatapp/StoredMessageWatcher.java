@@ -0,0 +1,238 @@
+package com.mycompany.chatapp;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Keeps stored messages in step with message_<id>.json files that other processes drop into a
+// directory while the app runs. A WatchService reports creates, modifies and deletes; events are
+// coalesced per file until the directory has been quiet for QUIET_MILLIS (or MAX_DELAY_MILLIS has
+// passed), then the batch is applied at once. Files that exist are parsed in parallel and handed
+// to MessageService.store, which validates the messages, writes them in groups and adds them to
+// the registry; a rejected file is counted and left as it is. Files that are gone have their
+// messages removed from the store and the registry. The watcher never deletes a file itself: the
+// files belong to whoever put them there. Nothing is rescanned unless the watch queue overflows.
+public class StoredMessageWatcher implements AutoCloseable {
+
+    static final long QUIET_MILLIS = 100;
+    static final long MAX_DELAY_MILLIS = 1000;
+
+    private static final Pattern MESSAGE_FILE = Pattern.compile("message_(\\d{10})\\.json");
+
+    private final Path directory;
+    private final MessageService service;
+    private final StoredMessageLoader loader = new StoredMessageLoader();
+    private final AtomicLong batchesApplied = new AtomicLong();
+    private final AtomicLong filesStored = new AtomicLong();
+    private final AtomicLong filesRejected = new AtomicLong();
+    private final AtomicLong filesRemoved = new AtomicLong();
+    // IDs stored from a file, so deletes lost to an overflow can still be found by a rescan
+    private final Set<String> storedIDs = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<String> lastFailure = new AtomicReference<>();
+    private WatchService watcher;
+    private Thread thread;
+
+    public StoredMessageWatcher(Path directory, MessageService service) {
+        this.directory = directory;
+        this.service = service;
+    }
+
+    // Starts watching on a daemon thread
+    public synchronized void start() throws IOException {
+        if (thread != null) {
+            return;
+        }
+        watcher = directory.getFileSystem().newWatchService();
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        thread = new Thread(this::run, "stored-message-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Number of coalesced batches applied so far
+    public long getBatchesApplied() {
+        return batchesApplied.get();
+    }
+
+    // Files whose messages were stored
+    public long getFilesStored() {
+        return filesStored.get();
+    }
+
+    // Files left in place because their message was rejected or could not be written
+    public long getFilesRejected() {
+        return filesRejected.get();
+    }
+
+    // Deleted files whose stored messages were removed
+    public long getFilesRemoved() {
+        return filesRemoved.get();
+    }
+
+    // Why the most recent file was not stored or removed, or null if nothing has failed
+    public String getLastFailure() {
+        return lastFailure.get();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Set<Path> pending = new LinkedHashSet<>();
+                boolean overflow = collect(watcher.take(), pending);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MILLIS);
+                WatchKey key;
+                while (System.nanoTime() < deadline && (key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collect(key, pending);
+                }
+                if (overflow) {
+                    rescan(pending);
+                }
+                apply(pending);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    // Adds the message files named by a key's events to pending
+    private boolean collect(WatchKey key, Set<Path> pending) {
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            if (MESSAGE_FILE.matcher(file.getFileName().toString()).matches()) {
+                pending.add(file);
+            }
+        }
+        key.reset();
+        return overflow;
+    }
+
+    // Events were lost; treat every message file that is present, and every stored one that is
+    // gone, as changed
+    private void rescan(Set<Path> pending) {
+        for (String id : storedIDs) {
+            pending.add(directory.resolve("message_" + id + ".json"));
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "message_*.json")) {
+            for (Path file : files) {
+                if (MESSAGE_FILE.matcher(file.getFileName().toString()).matches()) {
+                    pending.add(file);
+                }
+            }
+        } catch (IOException e) {
+            // Keep what the events already told us
+        }
+    }
+
+    // Applies one coalesced batch: stores the messages of the files that exist and removes the
+    // messages of the files that are gone
+    void apply(Collection<Path> changed) {
+        List<Path> files = new ArrayList<>(changed.size());
+        boolean removed = false;
+        for (Path file : changed) {
+            if (Files.exists(file)) {
+                files.add(file);
+            } else {
+                removed |= remove(file);
+            }
+        }
+        if (files.isEmpty()) {
+            if (removed) {
+                batchesApplied.incrementAndGet();
+            }
+            return;
+        }
+        // A file still being written fails to parse now and is picked up by its next modify event
+        Message[] decoded = loader.decodeJsonFiles(files);
+        List<Path> parsed = new ArrayList<>(files.size());
+        List<Message> messages = new ArrayList<>(files.size());
+        for (int i = 0; i < decoded.length; i++) {
+            if (decoded[i] != null) {
+                parsed.add(files.get(i));
+                messages.add(decoded[i]);
+            }
+        }
+        if (messages.isEmpty()) {
+            if (removed) {
+                batchesApplied.incrementAndGet();
+            }
+            return;
+        }
+        List<MessageService.SendResult> results;
+        try {
+            results = service.store(messages).join();
+        } catch (CompletionException e) {
+            // The service is shutting down; the files are still there for the next start
+            filesRejected.addAndGet(messages.size());
+            lastFailure.set(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            return;
+        }
+        for (int i = 0; i < results.size(); i++) {
+            MessageService.SendResult result = results.get(i);
+            if (!result.isSuccess()) {
+                filesRejected.incrementAndGet();
+                lastFailure.set(parsed.get(i).getFileName() + ": " + result.getDetail());
+                continue;
+            }
+            storedIDs.add(result.getMessage().getMessageID());
+            filesStored.incrementAndGet();
+        }
+        batchesApplied.incrementAndGet();
+    }
+
+    // Removes the stored message of a deleted file; returns true if there was one
+    private boolean remove(Path file) {
+        Matcher name = MESSAGE_FILE.matcher(file.getFileName().toString());
+        if (!name.matches()) {
+            return false;
+        }
+        String id = name.group(1);
+        storedIDs.remove(id);
+        try {
+            if (service.deleteStored(id)) {
+                filesRemoved.incrementAndGet();
+                return true;
+            }
+        } catch (IOException e) {
+            lastFailure.set(file.getFileName() + ": " + e.getMessage());
+        }
+        return false;
+    }
+}
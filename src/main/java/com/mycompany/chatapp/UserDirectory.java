@@ -0,0 +1,234 @@
+package com.mycompany.chatapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// Every registered user, keyed by username in a concurrent map, so finding a user costs the
+// same with ten users or ten million. Passwords are never kept: each user has a random 16-byte
+// salt and a PBKDF2-HMAC-SHA256 hash of the password, computed with the directory's iteration
+// count. Raising the count makes guessing slower; users hashed with a lower count are upgraded
+// the next time they log in. A login costs one hash however many users exist, and a name that
+// is not registered costs the same as a wrong password so the two cannot be told apart.
+//
+// The directory is saved as one compact file:
+// [int version][int users]([utf username][long phone][int iterations][16 salt][32 hash])*
+// followed by the CRC32 of everything before it. Writes go to a temporary file that replaces the
+// old one, so a crash never leaves half a directory. A file that fails to load is left exactly as
+// it is: the users in memory are only replaced once the whole file has passed its CRC check, and
+// save refuses to write over a file the last load could not read.
+public class UserDirectory {
+
+    public static final String FILE_NAME = "users.dat";
+    // OWASP's 2023 guidance for PBKDF2-HMAC-SHA256
+    public static final int DEFAULT_ITERATIONS = 210_000;
+
+    static final int SALT_BYTES = 16;
+    static final int HASH_BYTES = 32;
+    private static final int VERSION = 1;
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+
+    private final Path file;
+    private final int iterations;
+    private final ConcurrentMap<String, User> users = new ConcurrentHashMap<>();
+    // Set when the last load failed, so the unread users are not lost by saving over them
+    private volatile boolean unreadable;
+    private final SecureRandom random = new SecureRandom();
+    // Hashed with when the username is unknown, so failed lookups take as long as failed passwords
+    private final byte[] decoySalt = new byte[SALT_BYTES];
+
+    public UserDirectory(Path file) {
+        this(file, DEFAULT_ITERATIONS);
+    }
+
+    public UserDirectory(Path file, int iterations) {
+        this.file = file;
+        this.iterations = iterations;
+        random.nextBytes(decoySalt);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    public boolean contains(String username) {
+        return username != null && users.containsKey(username);
+    }
+
+    // Validates and adds a user; USERNAME_TAKEN if the name is already registered
+    public ValidationCode register(String username, String password, String phone) {
+        ValidationCode code = Validators.checkUsername(username);
+        if (code == ValidationCode.OK) {
+            code = Validators.checkPassword(password);
+        }
+        if (code == ValidationCode.OK) {
+            code = Validators.checkPhone(phone);
+        }
+        if (code != ValidationCode.OK) {
+            return code;
+        }
+        if (users.containsKey(username)) {
+            return ValidationCode.USERNAME_TAKEN;
+        }
+        User user = newUser(password, RecipientNumber.encode(phone));
+        return users.putIfAbsent(username, user) == null ? ValidationCode.OK : ValidationCode.USERNAME_TAKEN;
+    }
+
+    // True if the password matches the user's hash
+    public boolean authenticate(String username, String password) {
+        User user = username == null ? null : users.get(username);
+        if (user == null || password == null) {
+            hash(password == null ? "" : password, decoySalt, iterations);
+            return false;
+        }
+        if (!matches(user, password)) {
+            return false;
+        }
+        if (user.iterations < iterations) {
+            users.replace(username, user, newUser(password, user.phone));
+        }
+        return true;
+    }
+
+    // The user's cell phone number, or null if the name is not registered
+    public String getPhoneNumber(String username) {
+        User user = username == null ? null : users.get(username);
+        return user == null ? null : RecipientNumber.decode(user.phone);
+    }
+
+    // Iterations the user's current hash was computed with, or 0 if the name is not registered
+    int iterationsOf(String username) {
+        User user = users.get(username);
+        return user == null ? 0 : user.iterations;
+    }
+
+    // Replaces the users in memory with the saved file; a missing file means no users yet. If the
+    // file cannot be read the users in memory are kept and save() refuses to overwrite it.
+    public void load() throws IOException {
+        if (!Files.exists(file)) {
+            users.clear();
+            unreadable = false;
+            return;
+        }
+        unreadable = true;
+        Map<String, User> loaded = new HashMap<>();
+        CRC32 crc = new CRC32();
+        try (DataInputStream raw = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc));
+            if (in.readInt() != VERSION) {
+                throw new IOException("Unsupported user directory version in " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String username = in.readUTF();
+                long phone = in.readLong();
+                int rounds = in.readInt();
+                byte[] salt = new byte[SALT_BYTES];
+                byte[] hash = new byte[HASH_BYTES];
+                in.readFully(salt);
+                in.readFully(hash);
+                loaded.put(username, new User(phone, rounds, salt, hash));
+            }
+            if (raw.readLong() != crc.getValue()) {
+                throw new IOException("User directory " + file + " is damaged");
+            }
+        } catch (EOFException e) {
+            throw new IOException("User directory " + file + " is truncated", e);
+        }
+        users.clear();
+        users.putAll(loaded);
+        unreadable = false;
+    }
+
+    // True if the last load failed; save() will not write over the file until a load succeeds
+    public boolean isUnreadable() {
+        return unreadable;
+    }
+
+    public void save() throws IOException {
+        if (unreadable) {
+            throw new IOException("User directory " + file + " could not be read, so it was not overwritten");
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream raw = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc));
+            // Users registered while saving may or may not be included; the count matches what is written
+            List<Map.Entry<String, User>> entries = new ArrayList<>(users.entrySet());
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, User> entry : entries) {
+                User user = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(user.phone);
+                out.writeInt(user.iterations);
+                out.write(user.salt);
+                out.write(user.hash);
+            }
+            out.flush();
+            new DataOutputStream(raw).writeLong(crc.getValue());
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private User newUser(String password, long phone) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return new User(phone, iterations, salt, hash(password, salt, iterations));
+    }
+
+    private static boolean matches(User user, String password) {
+        // Constant-time comparison, so timing does not reveal how much of the hash matched
+        return MessageDigest.isEqual(user.hash, hash(password, user.salt, user.iterations));
+    }
+
+    static byte[] hash(String password, byte[] salt, int iterations) {
+        KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BYTES * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    // One user's phone number and password hash; replaced as a whole, never changed in place
+    private static final class User {
+        final long phone;
+        final int iterations;
+        final byte[] salt;
+        final byte[] hash;
+
+        User(long phone, int iterations, byte[] salt, byte[] hash) {
+            this.phone = phone;
+            this.iterations = iterations;
+            this.salt = salt;
+            this.hash = hash;
+        }
+    }
+}
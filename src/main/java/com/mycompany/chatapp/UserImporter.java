@@ -0,0 +1,346 @@
+package com.mycompany.chatapp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+// Bulk registration from a CSV of username,password,phone,name,surname (an optional header row
+// naming the columns is skipped). Rows are read in chunks of CHUNK_ROWS, so memory stays the same
+// however long the file is. Each chunk is validated in parallel on a fork-join pool with the same
+// rules as the registration dialogs, and then the passwords of the rows that passed are hashed in
+// parallel on every core of the pool. The first row for a username wins; later rows for it, like
+// rows for a name already in the directory, are rejected as USERNAME_TAKEN.
+//
+// Every rejected row is written to the report, in input order, as "line,username,reason". A quote
+// that is never closed makes only the line it opened on MALFORMED: the reader stops looking for
+// the closing quote after MAX_RECORD_CHARS and reads the lines it passed over again as new rows.
+public class UserImporter {
+
+    static final int CHUNK_ROWS = 1024;
+    static final int FIELDS = 5;
+    // Longest record a quoted field may stretch to; five short fields never come close
+    static final int MAX_RECORD_CHARS = 4096;
+    static final String MALFORMED = "MALFORMED";
+    // Rows per leaf task when validating; hashing splits down to single rows since each hash is slow
+    static final int VALIDATE_THRESHOLD = 256;
+
+    private final UserDirectory users;
+    private final ForkJoinPool pool;
+
+    public UserImporter(UserDirectory users) {
+        this(users, ForkJoinPool.commonPool());
+    }
+
+    public UserImporter(UserDirectory users, ForkJoinPool pool) {
+        this.users = users;
+        this.pool = pool;
+    }
+
+    // Imports the CSV file and writes rejected rows to the report file
+    public ImportResult importFile(Path csv, Path report) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+                Writer out = new BufferedWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8), 1 << 16)) {
+            return importUsers(in, out);
+        }
+    }
+
+    public ImportResult importUsers(Reader csv, Writer report) throws IOException {
+        long start = System.nanoTime();
+        BufferedReader in = csv instanceof BufferedReader ? (BufferedReader) csv : new BufferedReader(csv, 1 << 16);
+        report.write("line,username,reason\r\n");
+        RowReader rows = new RowReader(in);
+        int read = 0;
+        int imported = 0;
+        int rejected = 0;
+        List<Row> chunk = new ArrayList<>(CHUNK_ROWS);
+        boolean first = true;
+        Row row;
+        while ((row = rows.next()) != null) {
+            if (first && isHeader(row)) {
+                first = false;
+                continue;
+            }
+            first = false;
+            chunk.add(row);
+            if (chunk.size() == CHUNK_ROWS) {
+                imported += importChunk(chunk);
+                rejected += writeRejected(chunk, report);
+                read += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            imported += importChunk(chunk);
+            rejected += writeRejected(chunk, report);
+            read += chunk.size();
+        }
+        report.flush();
+        return new ImportResult(read, imported, rejected, System.nanoTime() - start);
+    }
+
+    // Validates and registers one chunk; returns how many rows were registered
+    private int importChunk(List<Row> chunk) {
+        int size = chunk.size();
+        pool.invoke(new RangeTask(i -> {
+            Row row = chunk.get(i);
+            if (!row.malformed) {
+                row.result = validate(row.fields);
+            }
+        }, 0, size, VALIDATE_THRESHOLD));
+
+        // Sequential and cheap, so the first row for a name wins whatever order the hashing runs in
+        Set<String> seen = new HashSet<>();
+        for (Row row : chunk) {
+            if (row.result == ValidationCode.OK && (!seen.add(row.fields[0]) || users.contains(row.fields[0]))) {
+                row.result = ValidationCode.USERNAME_TAKEN;
+            }
+        }
+
+        pool.invoke(new RangeTask(i -> {
+            Row row = chunk.get(i);
+            if (row.result == ValidationCode.OK) {
+                row.result = users.register(row.fields[0], row.fields[1], row.fields[2]);
+            }
+        }, 0, size, 1));
+
+        int registered = 0;
+        for (Row row : chunk) {
+            if (row.result == ValidationCode.OK) {
+                registered++;
+            }
+        }
+        return registered;
+    }
+
+    // The checks behind checkUserName, checkPasswordComplexity and checkCellPhoneNumber, plus a
+    // name and surname for every row
+    static ValidationCode validate(String[] fields) {
+        if (fields.length != FIELDS || fields[3].isBlank() || fields[4].isBlank()) {
+            return ValidationCode.MISSING_VALUE;
+        }
+        ValidationCode code = Validators.checkUsername(fields[0]);
+        if (code == ValidationCode.OK) {
+            code = Validators.checkPassword(fields[1]);
+        }
+        if (code == ValidationCode.OK) {
+            code = Validators.checkPhone(fields[2]);
+        }
+        return code;
+    }
+
+    private static int writeRejected(List<Row> chunk, Writer report) throws IOException {
+        int rejected = 0;
+        for (Row row : chunk) {
+            if (row.result != ValidationCode.OK) {
+                report.write(Integer.toString(row.line));
+                report.write(',');
+                MessageReport.writeCsvField(row.fields.length > 0 ? row.fields[0] : "", report);
+                report.write(',');
+                report.write(row.malformed ? MALFORMED : row.result.name());
+                report.write("\r\n");
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+
+    private static boolean isHeader(Row row) {
+        return row.fields.length > 0 && row.fields[0].trim().equalsIgnoreCase("username");
+    }
+
+    // One CSV record, the line it started on and what became of it
+    private static final class Row {
+        final int line;
+        final String[] fields;
+        // An unterminated quote; fields holds what was on the line the record started on
+        final boolean malformed;
+        ValidationCode result;
+
+        Row(int line, String[] fields, boolean malformed) {
+            this.line = line;
+            this.fields = fields;
+            this.malformed = malformed;
+        }
+    }
+
+    // Splits records into fields; quoted fields may hold commas, doubled quotes and line breaks
+    static final class RowReader {
+        private final BufferedReader in;
+        // Lines read while looking for a closing quote that never came, to be read again
+        private final ArrayDeque<String> unread = new ArrayDeque<>();
+        private int lineNumber;
+
+        RowReader(BufferedReader in) {
+            this.in = in;
+        }
+
+        // The next non-blank record, or null at the end of the input
+        Row next() throws IOException {
+            String line;
+            do {
+                line = readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isEmpty());
+            int startLine = lineNumber;
+            List<String> fields = new ArrayList<>(FIELDS);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            // Set once a quoted field runs past the first line
+            List<String> firstLineFields = null;
+            List<String> continued = null;
+            int chars = line.length();
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    if (continued == null) {
+                        firstLineFields = new ArrayList<>(fields);
+                        firstLineFields.add(field.toString());
+                        continued = new ArrayList<>();
+                    }
+                    String more = chars > MAX_RECORD_CHARS ? null : readLine();
+                    if (more == null) {
+                        // Unterminated quote: reject the line it opened on and read the rest again
+                        for (int k = continued.size() - 1; k >= 0; k--) {
+                            unread.addFirst(continued.get(k));
+                        }
+                        lineNumber = startLine;
+                        return new Row(startLine, firstLineFields.toArray(new String[0]), true);
+                    }
+                    continued.add(more);
+                    chars += more.length() + 1;
+                    field.append('\n');
+                    line = more;
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return new Row(startLine, fields.toArray(new String[0]), false);
+        }
+
+        private String readLine() throws IOException {
+            String line = unread.isEmpty() ? in.readLine() : unread.removeFirst();
+            if (line != null) {
+                lineNumber++;
+            }
+            return line;
+        }
+    }
+
+    // Runs an action for every index in a range, splitting in halves down to the threshold
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IntConsumer action;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        RangeTask(IntConsumer action, int from, int to, int threshold) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (int i = from; i < to; i++) {
+                    action.accept(i);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(action, from, mid, threshold), new RangeTask(action, mid, to, threshold));
+        }
+    }
+
+    // Counts from one import and how long it took
+    public static final class ImportResult {
+        private final int rowsRead;
+        private final int imported;
+        private final int rejected;
+        private final long elapsedNanos;
+
+        ImportResult(int rowsRead, int imported, int rejected, long elapsedNanos) {
+            this.rowsRead = rowsRead;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getRowsRead() {
+            return rowsRead;
+        }
+
+        public int getImported() {
+            return imported;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return "Imported " + imported + " of " + rowsRead + " users (" + rejected + " rejected) in "
+                    + getElapsedMillis() + " ms";
+        }
+    }
+
+    // Imports users.csv-style files into the saved user directory from the command line
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: --import-users <users.csv> [rejections.csv]");
+            return;
+        }
+        Path csv = Path.of(args[0]);
+        Path report = Path.of(args.length > 1 ? args[1] : args[0] + ".rejected.csv");
+        Login.users.load();
+        ImportResult result = new UserImporter(Login.users).importFile(csv, report);
+        Login.users.save();
+        System.out.println(result);
+        System.out.println("Rejected rows written to " + report);
+    }
+}
@@ -0,0 +1,21 @@
+package com.mycompany.chatapp;
+
+// Outcome of a single validation check
+public enum ValidationCode {
+    OK,
+    MISSING_VALUE,
+    INVALID_PHONE,
+    MESSAGE_TOO_LONG,
+    INVALID_MESSAGE_ID,
+    INVALID_USERNAME,
+    PASSWORD_TOO_SHORT,
+    PASSWORD_MISSING_UPPERCASE,
+    PASSWORD_MISSING_DIGIT,
+    PASSWORD_MISSING_SPECIAL,
+    PASSWORD_HAS_LINE_BREAK,
+    USERNAME_TAKEN;
+
+    public boolean isValid() {
+        return this == OK;
+    }
+}
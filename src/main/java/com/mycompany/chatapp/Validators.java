@@ -0,0 +1,166 @@
+package com.mycompany.chatapp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Hand-written validators for phone numbers, message length, usernames and passwords.
+// Each check is a single pass over the input with no regex and no allocation, and returns a
+// ValidationCode instead of a message string. The rules match the regexes they replace.
+public final class Validators {
+
+    public static final int MAX_MESSAGE_LENGTH = 250;
+    public static final int MAX_USERNAME_LENGTH = 5;
+    public static final int MIN_PASSWORD_LENGTH = 8;
+
+    private Validators() {
+    }
+
+    // South African cell number: +27 followed by exactly 9 digits (was "\\+27\\d{9}")
+    public static ValidationCode checkPhone(String phone) {
+        if (phone == null) {
+            return ValidationCode.MISSING_VALUE;
+        }
+        if (phone.length() != 12 || phone.charAt(0) != '+' || phone.charAt(1) != '2' || phone.charAt(2) != '7') {
+            return ValidationCode.INVALID_PHONE;
+        }
+        for (int i = 3; i < 12; i++) {
+            char c = phone.charAt(i);
+            if (c < '0' || c > '9') {
+                return ValidationCode.INVALID_PHONE;
+            }
+        }
+        return ValidationCode.OK;
+    }
+
+    // Message body of at most 250 characters
+    public static ValidationCode checkMessageLength(String message) {
+        if (message == null) {
+            return ValidationCode.MISSING_VALUE;
+        }
+        return message.length() <= MAX_MESSAGE_LENGTH ? ValidationCode.OK : ValidationCode.MESSAGE_TOO_LONG;
+    }
+
+    // Username containing an underscore and no more than 5 characters
+    public static ValidationCode checkUsername(String username) {
+        if (username == null) {
+            return ValidationCode.MISSING_VALUE;
+        }
+        if (username.length() > MAX_USERNAME_LENGTH || username.indexOf('_') < 0) {
+            return ValidationCode.INVALID_USERNAME;
+        }
+        return ValidationCode.OK;
+    }
+
+    // At least 8 characters with an uppercase letter, a digit and a special character
+    public static ValidationCode checkPassword(String password) {
+        if (password == null) {
+            return ValidationCode.MISSING_VALUE;
+        }
+        if (password.length() < MIN_PASSWORD_LENGTH) {
+            return ValidationCode.PASSWORD_TOO_SHORT;
+        }
+        boolean hasUppercase = false;
+        boolean hasDigit = false;
+        boolean hasSpecial = false;
+        for (int i = 0; i < password.length(); i++) {
+            char c = password.charAt(i);
+            if (isLineTerminator(c)) {
+                // ".*" never matched across line breaks, so such passwords were always rejected
+                return ValidationCode.PASSWORD_HAS_LINE_BREAK;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                hasUppercase = true;
+            } else if (c >= '0' && c <= '9') {
+                hasDigit = true;
+            } else if (c < 'a' || c > 'z') {
+                hasSpecial = true;
+            }
+        }
+        if (!hasUppercase) {
+            return ValidationCode.PASSWORD_MISSING_UPPERCASE;
+        }
+        if (!hasDigit) {
+            return ValidationCode.PASSWORD_MISSING_DIGIT;
+        }
+        if (!hasSpecial) {
+            return ValidationCode.PASSWORD_MISSING_SPECIAL;
+        }
+        return ValidationCode.OK;
+    }
+
+    // What the registration dialogs tell the user when a username, password or phone number is rejected
+    public static String describeRegistrationFailure(ValidationCode code) {
+        switch (code) {
+            case USERNAME_TAKEN:
+                return "Username is already registered.";
+            case INVALID_USERNAME:
+            case MISSING_VALUE:
+                return "Username is not correctly formatted. It must contain an underscore and be no more than 5 characters.";
+            case INVALID_PHONE:
+                return "Cell phone number incorrectly formatted or does not contain international code (+27)";
+            case PASSWORD_HAS_LINE_BREAK:
+                return "Password cannot contain line breaks.";
+            default:
+                return "Password is not correctly formatted. It must be at least 8 characters, contain a capital letter, "
+                        + "a number, and a special character.";
+        }
+    }
+
+    // Runs the message checks in the order the send menu applies them
+    public static ValidationCode checkMessage(Message message) {
+        // The recipient was parsed and checked once when the message was built
+        if (!RecipientNumber.isValid(message.getRecipientNumber())) {
+            return message.getRecipient() == null ? ValidationCode.MISSING_VALUE : ValidationCode.INVALID_PHONE;
+        }
+        ValidationCode code = checkMessageLength(message.getMessage());
+        if (code != ValidationCode.OK) {
+            return code;
+        }
+        return message.checkMessageID() ? ValidationCode.OK : ValidationCode.INVALID_MESSAGE_ID;
+    }
+
+    // Validates every message in parallel and returns the failures in input order
+    public static List<Failure> validateAll(Collection<Message> messages) {
+        List<Message> ordered = messages instanceof List ? (List<Message>) messages : new ArrayList<>(messages);
+        return IntStream.range(0, ordered.size())
+                .parallel()
+                .mapToObj(i -> {
+                    ValidationCode code = checkMessage(ordered.get(i));
+                    return code == ValidationCode.OK ? null : new Failure(i, ordered.get(i), code);
+                })
+                .filter(f -> f != null)
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    // A message that failed validation and its position in the batch
+    public static final class Failure {
+        private final int index;
+        private final Message message;
+        private final ValidationCode code;
+
+        Failure(int index, Message message, ValidationCode code) {
+            this.index = index;
+            this.message = message;
+            this.code = code;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Message getMessage() {
+            return message;
+        }
+
+        public ValidationCode getCode() {
+            return code;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.mycompany.chatapp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+
+// Write-behind queue in front of the message store. Callers hand over a message and get a
+// future back straight away; one writer thread drains whatever has queued up, writes it as a
+// group with MessageLogStore.appendAll and completes the futures once the group is as durable
+// as the policy asks. Under load many stores share one write and one fsync.
+public class WriteBehindWriter implements AutoCloseable {
+
+    public enum Durability {
+        // Records are handed to the OS and may be lost if the machine goes down
+        NONE,
+        // One fsync for each group of records
+        BATCH,
+        // One fsync for each record, as slow as writing them one by one
+        RECORD
+    }
+
+    static final int DEFAULT_MAX_BATCH = 512;
+    static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+    // Queued by close(); the writer stops once it reaches it, so it is never interrupted mid-write
+    private static final Pending STOP = new Pending(null);
+
+    private final MessageLogStore store;
+    private final Durability durability;
+    private final int maxBatch;
+    private final BlockingQueue<Pending> queue;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public WriteBehindWriter(MessageLogStore store, Durability durability) {
+        this(store, durability, DEFAULT_MAX_BATCH, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public WriteBehindWriter(MessageLogStore store, Durability durability, int maxBatch, int queueCapacity) {
+        this.store = store;
+        this.durability = durability;
+        this.maxBatch = maxBatch;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::run, "message-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    // Queues the message and returns a future that completes once it is written; blocks only
+    // while the queue is full
+    public CompletableFuture<Void> write(Message message) {
+        return enqueue(new Pending(message));
+    }
+
+    // Completes once every message queued before it has been written
+    public CompletableFuture<Void> flush() {
+        return enqueue(new Pending(null));
+    }
+
+    // Deletes a record once the writes queued before it are done, so none of them can bring the
+    // record back; returns false if the store held no live record for the ID
+    public boolean delete(String messageID) throws IOException {
+        flush().exceptionally(error -> null).join();
+        return store.delete(messageID);
+    }
+
+    // Writes everything still queued, then stops the writer thread
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(STOP);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        // A write that passed the closed check just as close() began can land behind the marker
+        Pending left;
+        while ((left = queue.poll()) != null) {
+            left.done.completeExceptionally(new IllegalStateException("Write-behind writer is closed"));
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(Pending pending) {
+        if (closed) {
+            pending.done.completeExceptionally(new IllegalStateException("Write-behind writer is closed"));
+            return pending.done;
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.done.completeExceptionally(e);
+            return pending.done;
+        }
+        // Closed while this was being queued: whoever takes it out of the queue completes it
+        if (closed && queue.remove(pending)) {
+            pending.done.completeExceptionally(new IllegalStateException("Write-behind writer is closed"));
+        }
+        return pending.done;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+            boolean stop = batch.remove(STOP);
+            commit(batch);
+            batch.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    // Writes one group and completes its futures; flush markers complete after the messages before them
+    private void commit(List<Pending> batch) {
+        if (durability == Durability.RECORD) {
+            commitEach(batch);
+            return;
+        }
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            if (pending.message != null) {
+                messages.add(pending.message);
+            }
+        }
+        try {
+            if (!messages.isEmpty()) {
+                store.appendAll(messages);
+                if (durability == Durability.BATCH) {
+                    store.sync();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Pending pending : batch) {
+                pending.done.completeExceptionally(e);
+            }
+            return;
+        }
+        for (Pending pending : batch) {
+            pending.done.complete(null);
+        }
+    }
+
+    // Each record is written and synced on its own, so each future gets its own record's outcome.
+    // A flush marker fails if a record before it in the group did.
+    private void commitEach(List<Pending> batch) {
+        Exception failure = null;
+        for (Pending pending : batch) {
+            if (pending.message == null) {
+                if (failure == null) {
+                    pending.done.complete(null);
+                } else {
+                    pending.done.completeExceptionally(failure);
+                }
+                continue;
+            }
+            try {
+                store.append(pending.message);
+                store.sync();
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+                pending.done.completeExceptionally(e);
+                continue;
+            }
+            pending.done.complete(null);
+        }
+    }
+
+    // A queued message, or a flush marker when message is null
+    private static final class Pending {
+        final Message message;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(Message message) {
+            this.message = message;
+        }
+    }
+}
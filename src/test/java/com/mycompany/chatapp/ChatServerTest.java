@@ -0,0 +1,189 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChatServerTest {
+
+    @TempDir
+    Path dir;
+
+    private MessageRegistry registry;
+    private MessageService service;
+    private ChatServer server;
+
+    public ChatServerTest() {
+    }
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        registry = new MessageRegistry();
+        service = new MessageService(registry, new MessageLogStore(dir), WriteBehindWriter.Durability.NONE);
+        server = new ChatServer(new UserDirectory(dir.resolve("users.dat"), 1000), registry, service, new ConversationIndex(registry), new FullTextIndex(registry),
+                new MessageStatistics(registry));
+        server.start(0);
+    }
+
+    @AfterEach
+    public void stopServer() throws IOException {
+        server.close();
+        service.close();
+    }
+
+    @Test
+    public void testSessionRegistersLogsInSendsAndQueries() throws IOException {
+        try (Client client = new Client(server.getPort())) {
+            assertEquals("ERR Please log in first.", client.call("SEND +27834557896 Hi"));
+            assertTrue(client.call("REGISTER kyl_1 Ch&&sec@ke99 +27838968976").startsWith("OK"));
+            assertTrue(client.call("REGISTER kyl_1 Ch&&sec@ke99 +27838968976").startsWith("ERR"));
+            assertTrue(client.call("REGISTER kyle!!!!!!! Ch&&sec@ke99 +27838968976").startsWith("ERR"));
+            assertTrue(client.call("LOGIN kyl_1 wrong").startsWith("ERR"));
+            assertTrue(client.call("LOGIN kyl_1 Ch&&sec@ke99").startsWith("OK Welcome kyl_1"));
+
+            String sent = client.call("SEND +27834557896 Did you get the cake?");
+            assertTrue(sent.startsWith("OK SENT "), sent);
+            String id = sent.split(" ")[2];
+            assertTrue(client.call("STORE +27834557896 It is dinner time !").startsWith("OK STORED "));
+            assertTrue(client.call("SEND 08575975889 Where are you?").startsWith("ERR INVALID_RECIPIENT"));
+
+            assertEquals(List.of(id + " +27834557896 Did you get the cake?"), client.query("QUERY ID " + id));
+            assertEquals(2, client.query("QUERY RECIPIENT +27834557896").size());
+            assertEquals(List.of(id + " +27834557896 Did you get the cake?"), client.query("QUERY SEARCH cak*"));
+            assertEquals("OK Goodbye.", client.call("QUIT"));
+        }
+        assertEquals(1, registry.sentCount());
+    }
+
+    @Test
+    public void testQueriesOnlyShowTheSessionUsersMessages() throws IOException {
+        try (Client alice = new Client(server.getPort()); Client bob = new Client(server.getPort())) {
+            alice.call("REGISTER al_1 Ch&&sec@ke99 +27838968976");
+            bob.call("REGISTER bo_1 Ch&&sec@ke99 +27834484567");
+            alice.call("LOGIN al_1 Ch&&sec@ke99");
+            bob.call("LOGIN bo_1 Ch&&sec@ke99");
+            String secret = alice.call("SEND +27834557896 The cake is a surprise").split(" ")[2];
+            String toBob = alice.call("SEND +27834484567 Are you coming for cake?").split(" ")[2];
+
+            assertEquals(2, alice.query("QUERY SEARCH cake").size());
+            assertEquals(1, alice.query("QUERY RECIPIENT +27834557896").size());
+            assertEquals(1, alice.query("QUERY ID " + secret).size());
+
+            // Bob only sees what was addressed to him
+            assertEquals(List.of(toBob + " +27834484567 Are you coming for cake?"), bob.query("QUERY SEARCH cake"));
+            assertTrue(bob.query("QUERY RECIPIENT +27834557896").isEmpty());
+            assertTrue(bob.query("QUERY ID " + secret).isEmpty());
+            assertEquals(1, bob.query("QUERY RECIPIENT +27834484567").size());
+            assertEquals(List.of(toBob + " +27834484567 Are you coming for cake?"), bob.query("QUERY LONGEST"));
+        }
+    }
+
+    @Test
+    public void testLineBreaksInStoredTextStayOnOneLine() throws Exception {
+        try (Client client = new Client(server.getPort())) {
+            client.call("REGISTER kyl_1 Ch&&sec@ke99 +27838968976");
+            client.call("LOGIN kyl_1 Ch&&sec@ke99");
+            // Text from the app or an import can hold any line break; the protocol cannot carry one
+            Message m = new Message(1, "+27838968976", "first\rsecond\r\nthird\nfourth");
+            service.send(List.of(m)).join();
+
+            assertEquals(List.of(m.getMessageID() + " +27838968976 first second  third fourth"),
+                    client.query("QUERY ID " + m.getMessageID()));
+            assertEquals("OK Goodbye.", client.call("QUIT"));
+        }
+        assertEquals("a b c", ChatServer.oneLine("a\rb\nc"));
+    }
+
+    // Holds every connection open at once, then has each one register, log in and send. Both ends
+    // of each connection live in this JVM, so N sessions need about 2N file descriptors; the
+    // default of 1000 fits any CI limit. Run with -Dchatapp.test.sessions=10000 where the fd limit
+    // allows (ulimit -n above 20500). On Java 17 the sessions run on the cached pool of platform
+    // threads from ChatServer.newSessionExecutor, on Java 21+ on virtual threads.
+    @Test
+    public void testManyConcurrentSessions() throws Exception {
+        int clients = Integer.getInteger("chatapp.test.sessions", 1000);
+        List<Client> connected = new ArrayList<>();
+        try {
+            for (int i = 0; i < clients; i++) {
+                connected.add(new Client(server.getPort()));
+            }
+            // Every connection is open at once before any of them does work
+            long deadline = System.currentTimeMillis() + 60_000;
+            while (server.getSessionCount() < clients && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(clients, server.getSessionCount());
+
+            ExecutorService pool = Executors.newFixedThreadPool(32);
+            List<Future<String>> replies = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                Client client = connected.get(i);
+                String user = "u_" + Integer.toString(i, 36);
+                replies.add(pool.submit(() -> {
+                    client.call("REGISTER " + user + " Ch&&sec@ke99 +27838968976");
+                    client.call("LOGIN " + user + " Ch&&sec@ke99");
+                    return client.call("SEND +27834557896 Hello from " + user);
+                }));
+            }
+            for (Future<String> reply : replies) {
+                assertTrue(reply.get().startsWith("OK SENT "), reply.get());
+            }
+            pool.shutdown();
+        } finally {
+            for (Client client : connected) {
+                client.close();
+            }
+        }
+        assertEquals(clients, registry.sentCount());
+    }
+
+    // Minimal line client over loopback
+    private static final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+
+        Client(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        String call(String request) throws IOException {
+            out.write(request + "\n");
+            out.flush();
+            return in.readLine();
+        }
+
+        List<String> query(String request) throws IOException {
+            String header = call(request);
+            assertTrue(header.startsWith("OK "), header);
+            List<String> lines = new ArrayList<>();
+            for (int n = Integer.parseInt(header.substring(3)); n > 0; n--) {
+                lines.add(in.readLine());
+            }
+            return lines;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConversationIndexTest {
+
+    public ConversationIndexTest() {
+    }
+
+    @Test
+    public void testMergesSentAndStoredInOrder() {
+        MessageRegistry registry = new MessageRegistry();
+        ConversationIndex conversations = new ConversationIndex(registry);
+        Message sent = new Message(1, "+27838884567", "It is dinner time !");
+        Message stored = new Message(2, "+27838884567", "Ok, I am leaving without you.");
+        Message other = new Message(3, "+27834557896", "Did you get the cake?");
+        registry.addSent(sent);
+        registry.addStored(stored);
+        registry.addSent(other);
+
+        MessageRegistry.Page page = conversations.before("+27838884567", Long.MAX_VALUE, 50);
+        assertEquals(List.of(sent, stored), page.getMessages());
+        assertFalse(page.hasMore());
+
+        registry.removeSent(sent);
+        assertEquals(List.of(stored), conversations.before("+27838884567", Long.MAX_VALUE, 50).getMessages());
+        registry.clearStored();
+        assertEquals(0, conversations.count("+27838884567"));
+        assertEquals(1, conversations.count("+27834557896"));
+    }
+
+    @Test
+    public void testPagesBackwardsFromLatest() {
+        MessageRegistry registry = new MessageRegistry();
+        ConversationIndex conversations = new ConversationIndex(registry);
+        for (int i = 0; i < 120; i++) {
+            registry.addSent(new Message(i, "+27834557896", "Message " + i));
+        }
+
+        MessageRegistry.Page latest = conversations.before("+27834557896", Long.MAX_VALUE, 50);
+        assertTrue(latest.hasMore());
+        assertEquals("Message 70", latest.getMessages().get(0).getMessage());
+        assertEquals("Message 119", latest.getMessages().get(49).getMessage());
+
+        MessageRegistry.Page older = conversations.before("+27834557896", latest.getFirstSequence(), 50);
+        assertEquals("Message 20", older.getMessages().get(0).getMessage());
+        MessageRegistry.Page oldest = conversations.before("+27834557896", older.getFirstSequence(), 50);
+        assertEquals(20, oldest.getMessages().size());
+        assertFalse(oldest.hasMore());
+
+        MessageRegistry.Page forward = conversations.after("+27834557896", oldest.getLastSequence(), 10);
+        assertEquals("Message 20", forward.getMessages().get(0).getMessage());
+        assertEquals(10, conversations.range("+27834557896", forward.getFirstSequence(), forward.getLastSequence() + 1).size());
+    }
+}
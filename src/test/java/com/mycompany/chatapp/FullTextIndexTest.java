@@ -0,0 +1,44 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FullTextIndexTest {
+
+    public FullTextIndexTest() {
+    }
+
+    @Test
+    public void testTermAndPrefixQueries() {
+        MessageRegistry registry = new MessageRegistry();
+        FullTextIndex index = new FullTextIndex(registry);
+        Message payment = new Message(1, "+27834557896", "Did the payment go through?");
+        Message paid = new Message(2, "+27838884567", "I paid for dinner.");
+        Message cake = new Message(3, "+27834557896", "Did you get the cake?");
+        registry.addSent(payment);
+        registry.addStored(paid);
+        registry.addSent(cake);
+
+        assertEquals(List.of(payment), index.search("PAYMENT", 10));
+        assertEquals(List.of(paid, payment), index.search("pa*", 10));
+        assertEquals(List.of(cake, payment), index.search("did", 10));
+        assertEquals(List.of(cake), index.search("did ca*", 10));
+        assertTrue(index.search("missing", 10).isEmpty());
+    }
+
+    @Test
+    public void testIndexFollowsDeletes() {
+        MessageRegistry registry = new MessageRegistry();
+        FullTextIndex index = new FullTextIndex(registry);
+        Message payment = new Message(1, "+27834557896", "Did the payment go through?");
+        registry.addSent(payment);
+        registry.addStored(new Message(2, "+27838884567", "Payment is late"));
+
+        registry.removeSent(payment);
+        assertEquals(1, index.search("payment", 10).size());
+        registry.clearStored();
+        assertTrue(index.search("pay*", 10).isEmpty());
+        assertEquals(0, index.termCount());
+    }
+}
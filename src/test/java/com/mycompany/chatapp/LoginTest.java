@@ -2,10 +2,15 @@
 package com.mycompany.chatapp;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Path;
 import static org.junit.jupiter.api.Assertions.*;
 
 
 public class LoginTest {
+
+    @TempDir
+    Path dir;
     
     public LoginTest() {
     }
@@ -14,10 +19,6 @@ public class LoginTest {
     public void testSetRegisteredUsername() {
     }
 
-    @Test
-    public void testSetRegisteredPassword() {
-    }
-
     @Test
     public void testSetRegisteredPhoneNumber() {
     }
@@ -42,10 +43,6 @@ public class LoginTest {
     public void testGetRegisteredUsername() {
     }
 
-    @Test
-    public void testGetRegisteredPassword() {
-    }
-
     @Test
     public void testGetRegisteredPhoneNumber() {
     }
@@ -138,29 +135,25 @@ public class LoginTest {
     @Test
     void testPasswordMeetsRequirements_AssertEquals() {
         Login user = new Login();
-        user.setRegisteredPassword("Ch&&sec@ke99!");
-        assertEquals(true, user.checkPasswordComplexity(), "Password should meet complexity requirements");
+        assertEquals(true, user.checkPasswordComplexity("Ch&&sec@ke99!"), "Password should meet complexity requirements");
     }
 
     @Test
     void testPasswordDoesNotMeetRequirements_AssertEquals() {
         Login user = new Login();
-        user.setRegisteredPassword("password");
-        assertEquals(false, user.checkPasswordComplexity(), "Password should not meet complexity requirements");
+        assertEquals(false, user.checkPasswordComplexity("password"), "Password should not meet complexity requirements");
     }
 
     @Test
     void testPasswordMeetsRequirements_AssertTrue() {
         Login user = new Login();
-        user.setRegisteredPassword("Ch&&sec@ke99!");
-        assertTrue(user.checkPasswordComplexity(), "Password should meet complexity requirements");
+        assertTrue(user.checkPasswordComplexity("Ch&&sec@ke99!"), "Password should meet complexity requirements");
     }
 
     @Test
     void testPasswordDoesNotMeetRequirements_AssertFalse() {
         Login user = new Login();
-        user.setRegisteredPassword("password");
-        assertFalse(user.checkPasswordComplexity(), "Password should not meet complexity requirements");
+        assertFalse(user.checkPasswordComplexity("password"), "Password should not meet complexity requirements");
     }
     
     
@@ -203,19 +196,56 @@ public class LoginTest {
     // Login Tests
     @Test
     void testLoginSuccess() {
+        UserDirectory users = new UserDirectory(dir.resolve("users.dat"), 1000);
+        Login registering = new Login(users);
+        registering.setRegisteredUsername("kyl_1");
+        registering.setRegisteredPhoneNumber("+27838968976");
+        assertEquals("User has been successfully registered.", registering.register("Ch&&sec@ke99!"));
+        assertEquals(ValidationCode.OK, registering.getRegistration());
+
+        Login user = new Login(users);
+        user.setLoginUsername("kyl_1");
+        user.setLoginPassword("Ch&&sec@ke99!");
+        assertTrue(user.checkLoginDetails(), "Login should be successful");
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void testOriginalConstructorKeepsFieldsInPlace() {
         Login user = new Login("kyl_1", "Ch&&sec@ke99!", "+27838968976", "kyl_1", "Ch&&sec@ke99!", "+27838968976", "Kyle", "Smith");
-        assertTrue(user.getLoginUsername().equals(user.getRegisteredUsername()) &&
-                   user.getLoginPassword().equals(user.getRegisteredPassword()), 
-                   "Login should be successful");
+        assertEquals("kyl_1", user.getRegisteredUsername());
+        assertEquals("+27838968976", user.getRegisteredPhoneNumber());
+        assertEquals("kyl_1", user.getLoginUsername());
+        assertEquals("Ch&&sec@ke99!", user.getLoginPassword());
+        assertEquals("Kyle", user.getName());
+        assertEquals("Smith", user.getSurname());
     }
 
     @Test
     void testLoginFail() {
-        Login user = new Login("kyl_1", "Ch&&sec@ke99!", "+27838968976", "wrongUser", "wrongPass", "+27838968976", "Kyle", "Smith");
-        assertFalse(user.getLoginUsername().equals(user.getRegisteredUsername()) &&
-                    user.getLoginPassword().equals(user.getRegisteredPassword()), 
-                    "Login should fail");
+        UserDirectory users = new UserDirectory(dir.resolve("users.dat"), 1000);
+        assertEquals(ValidationCode.OK, users.register("kyl_1", "Ch&&sec@ke99!", "+27838968976"));
+        Login user = new Login(users);
+        user.setLoginUsername("kyl_1");
+        user.setLoginPassword("wrongPass");
+        assertFalse(user.checkLoginDetails(), "Login should fail");
+
+        // Details typed at registration are not a login unless the directory accepted them
+        user.setRegisteredUsername("wrongUser");
+        user.setLoginUsername("wrongUser");
+        assertFalse(user.checkLoginDetails(), "Login should fail");
+
+        Login again = new Login(users);
+        again.setRegisteredUsername("kyl_1");
+        again.setRegisteredPhoneNumber("+27838968976");
+        assertEquals("That username is already registered; log in with its password.", again.register("Ch&&sec@ke99!"));
+        assertEquals(ValidationCode.USERNAME_TAKEN, again.getRegistration());
+
+        Login badPhone = new Login(users);
+        badPhone.setRegisteredUsername("ky_2");
+        badPhone.setRegisteredPhoneNumber("08966553");
+        assertEquals("Cell phone number incorrectly formatted or does not contain international code (+27)",
+                badPhone.register("Ch&&sec@ke99!"));
     }
 
 }
-
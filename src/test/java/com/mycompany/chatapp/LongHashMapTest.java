@@ -0,0 +1,107 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongHashMapTest {
+
+    public LongHashMapTest() {
+    }
+
+    @Test
+    public void testMatchesHashMapUnderRandomPutsAndRemoves() {
+        LongHashMap<String> map = new LongHashMap<>();
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // A small key range forces long probe runs and many backward shifts
+            long key = 27_000_000_000L + random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String value = "v" + i;
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(expected.keySet().stream().mapToLong(Long::longValue).sorted().toArray(), keys);
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, "x"));
+    }
+
+    @Test
+    public void testComputeAndCounters() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertEquals("a", map.compute(27834557896L, v -> v == null ? "a" : v + "a"));
+        assertEquals("aa", map.compute(27834557896L, v -> v == null ? "a" : v + "a"));
+        assertNull(map.compute(27834557896L, v -> null));
+        assertEquals(0, map.size());
+
+        LongCounterMap counts = new LongCounterMap();
+        for (int i = 0; i < 1000; i++) {
+            counts.add(27_800_000_000L + i % 10, 1);
+        }
+        assertEquals(100, counts.get(27_800_000_003L));
+        assertEquals(10, counts.size());
+        for (int i = 0; i < 100; i++) {
+            counts.add(27_800_000_003L, -1);
+        }
+        assertEquals(0, counts.get(27_800_000_003L));
+        assertEquals(9, counts.size());
+        long[] total = new long[1];
+        counts.forEach((key, count) -> total[0] += count);
+        assertEquals(900, total[0]);
+    }
+
+    @Test
+    public void testConcurrentUpdatesAcrossSegments() throws Exception {
+        LongHashMap<long[]> map = new LongHashMap<>();
+        LongCounterMap counts = new LongCounterMap();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    long key = 27_800_000_000L + i % 500;
+                    map.compute(key, v -> {
+                        long[] count = v == null ? new long[1] : v;
+                        count[0]++;
+                        return count;
+                    });
+                    counts.add(key, 1);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(500, map.size());
+        assertEquals(500, counts.size());
+        assertEquals(500, map.keys().length);
+        for (long key : map.keys()) {
+            assertEquals(threads.length * 40, map.get(key)[0]);
+            assertEquals(threads.length * 40, counts.get(key));
+        }
+
+        // Consecutive numbers land in every segment
+        boolean[] used = new boolean[LongHashMap.SEGMENTS];
+        for (long key : map.keys()) {
+            used[LongHashMap.segmentIndex(key)] = true;
+        }
+        for (boolean segmentUsed : used) {
+            assertTrue(segmentUsed);
+        }
+        map.clear();
+        counts.clear();
+        assertEquals(0, map.size());
+        assertEquals(0, counts.size());
+    }
+}
@@ -0,0 +1,95 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageArenaTest {
+
+    public MessageArenaTest() {
+    }
+
+    @Test
+    public void testViewsReadBackWhatWasAdded() {
+        MessageArena arena = new MessageArena();
+        Message m1 = new Message("0000000042", 1, "+27834557896", "Did you get the cake?", "00:1:DIDCAKE?");
+        Message m2 = new Message("9876543210", 2, null, "Ünïcödé — ok", "98:2:ÜNÏCÖDÉOK");
+        assertEquals(0, arena.add(m1));
+        assertEquals(1, arena.add(m2));
+
+        MessageArena.View view = arena.view(0);
+        assertEquals("0000000042", view.getMessageID());
+        assertEquals(42L, view.getMessageIdAsLong());
+        assertEquals(1, view.getMessageNumber());
+        assertEquals("+27834557896", view.getRecipient());
+        assertEquals("Did you get the cake?", view.getMessage());
+        assertEquals("00:1:DIDCAKE?", view.getMessageHash());
+
+        assertSame(view, view.moveTo(1));
+        assertNull(view.getRecipient());
+        assertEquals("Ünïcödé — ok", view.getMessage());
+        assertEquals("98:2:ÜNÏCÖDÉOK", view.getMessageHash());
+        assertEquals(m2.getMessageID(), arena.toMessage(1).getMessageID());
+        assertThrows(IndexOutOfBoundsException.class, () -> view.moveTo(2));
+        assertThrows(IllegalArgumentException.class, () -> arena.add(new Message("12ab", 3, null, "x", "x")));
+    }
+
+    @Test
+    public void testManyMessagesSpanSlabsAndShareRecipients() {
+        MessageArena arena = new MessageArena();
+        String body = "x".repeat(249);
+        int count = 20_000;
+        for (int i = 0; i < count; i++) {
+            String id = MessageIdAllocator.format(i);
+            arena.add(new Message(id, i, "+2783455" + String.format("%04d", i % 100), body + (i % 10), "h" + i));
+        }
+        assertEquals(count, arena.size());
+        assertEquals(27834550042L, arena.view(142).getRecipientNumber());
+
+        List<String> ids = new ArrayList<>();
+        arena.forEach(view -> {
+            if (view.getMessageNumber() % 5000 == 0) {
+                ids.add(view.getMessageID());
+            }
+            assertEquals(250, view.getMessageByteLength());
+        });
+        assertEquals(List.of(MessageIdAllocator.format(0), MessageIdAllocator.format(5000),
+                MessageIdAllocator.format(10000), MessageIdAllocator.format(15000)), ids);
+        assertEquals(body + "9", arena.view(count - 1).getMessage());
+        assertEquals("h" + (count - 1), arena.view(count - 1).getMessageHash());
+        // UTF-8 text plus column data, with no per-message objects
+        assertTrue(arena.bytesUsed() / count < 400);
+    }
+
+    @Test
+    public void testFreedEntriesAreReusedAndTheirBytesReclaimed() {
+        MessageArena arena = new MessageArena();
+        String body = "x".repeat(250);
+        int count = 10_000;
+        long[] handles = new long[count];
+        for (int i = 0; i < count; i++) {
+            handles[i] = arena.addEntry(new Message(MessageIdAllocator.format(i), i, "+27834557896", body, "h" + i));
+        }
+        long full = arena.bytesUsed();
+        for (int i = 0; i < count; i++) {
+            if (i % 10 != 0) {
+                arena.free(handles[i]);
+            }
+        }
+        assertEquals(count / 10, arena.size());
+        // Most of the slab bytes were freed, so the live ones were copied into fresh slabs
+        assertTrue(arena.bytesUsed() <= full - MessageArena.SLAB_BYTES);
+        assertNull(arena.body(handles[1]));
+        assertEquals(body, arena.body(handles[10]));
+        assertEquals("h9990", arena.view(9990).getMessageHash());
+
+        // A freed slot is handed out again, and the old handle still reads as freed
+        int reused = arena.add(new Message("0000000001", 1, "+27834557896", "again", "h"));
+        assertNotEquals(0, reused % 10);
+        assertEquals("again", arena.view(reused).getMessage());
+        assertNull(arena.body(handles[reused]));
+        arena.free(handles[reused]);
+        assertEquals(count / 10 + 1, arena.size());
+    }
+}
@@ -0,0 +1,146 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageBulkTransferTest {
+
+    @TempDir
+    Path dir;
+
+    public MessageBulkTransferTest() {
+    }
+
+    @Test
+    public void testLinesAreParsedValidatedAndReported() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        Message existing = new Message(1, "+27834557896", "Did you get the cake?");
+        registry.addSent(existing);
+        Message good = new Message(2, "+27838884567", "It is dinner time !");
+        String ndjson = good.toJson() + "\n"
+                + "{\"messageID\":\"0000000099\",\"messageNumber\":3,\"recipient\":\"+27834484567\",\"message\":\"Where are you?\"}\n"
+                + "{\"messageNumber\":4,\"recipient\":\"+27838884567\",\"message\":\"New from the file\"}\n"
+                + "\n"
+                + "{not json\n"
+                + good.toJson() + "\n"
+                + existing.toJson() + "\n"
+                + "{\"messageNumber\":5,\"recipient\":\"08575975889\",\"message\":\"Bad number\"}\n"
+                + "{\"messageID\":\"0000000097\",\"messageNumber\":6,\"recipient\":\"+27838884567\","
+                + "\"message\":\"Wrong hash\",\"messageHash\":\"00:6:NOPE\"}\n"
+                + "{\"messageNumber\":7,\"recipient\":\"+27838884567\"}\n";
+
+        StringWriter report = new StringWriter();
+        try (MessageService service = new MessageService(registry, new MessageLogStore(dir))) {
+            MessageBulkTransfer transfer = new MessageBulkTransfer(registry, service);
+            MessageBulkTransfer.ImportResult result = transfer.importMessages(new StringReader(ndjson),
+                    MessageRegistry.Kind.SENT, report);
+
+            assertEquals(9, result.getLinesRead());
+            assertEquals(3, result.getImported());
+            assertEquals(6, result.getRejected());
+        }
+        assertEquals(4, registry.sentCount());
+        assertNotNull(registry.findSentByID(good.getMessageID()));
+        assertEquals(MessageHasher.hash("0000000099", 3, "Where are you?"), registry.findSentByID("0000000099").getMessageHash());
+        assertEquals(1, registry.findByRecipient("+27838884567").stream()
+                .filter(m -> m.getMessage().equals("New from the file")).count());
+
+        String[] rows = report.toString().split("\r\n");
+        assertEquals("line,messageID,reason", rows[0]);
+        assertEquals("5,,MALFORMED", rows[1]);
+        assertEquals("6," + good.getMessageID() + ",DUPLICATE_ID", rows[2]);
+        assertEquals("7," + existing.getMessageID() + ",DUPLICATE_ID", rows[3]);
+        assertTrue(rows[4].startsWith("8,") && rows[4].endsWith(",INVALID_RECIPIENT"));
+        assertEquals("9,0000000097,HASH_MISMATCH", rows[5]);
+        assertEquals("10,,MISSING_VALUE", rows[6]);
+    }
+
+    @Test
+    public void testExportedMessagesImportAgainInChunks() throws Exception {
+        int count = MessageBulkTransfer.CHUNK_LINES * 2 + 5;
+        MessageRegistry source = new MessageRegistry();
+        Path sent = dir.resolve("sent.ndjson");
+        Path stored = dir.resolve("stored.ndjson");
+        try (MessageService service = new MessageService(source, new MessageLogStore(dir.resolve("source")))) {
+            // Written without IDs, so the import allocates them
+            try (Writer out = Files.newBufferedWriter(dir.resolve("new.ndjson"), StandardCharsets.UTF_8)) {
+                for (int i = 0; i < count; i++) {
+                    out.write("{\"messageNumber\":" + i + ",\"recipient\":\"+27834557896\",\"message\":\"Bulk message " + i + "\"}\n");
+                }
+            }
+            MessageBulkTransfer transfer = new MessageBulkTransfer(source, service);
+            assertEquals(count, transfer.importFile(dir.resolve("new.ndjson"), MessageRegistry.Kind.SENT,
+                    dir.resolve("new.rejected.csv")).getImported());
+            assertEquals(count, transfer.importFile(dir.resolve("new.ndjson"), MessageRegistry.Kind.STORED,
+                    dir.resolve("stored.rejected.csv")).getImported());
+            assertEquals(count, transfer.exportFile(MessageRegistry.Kind.SENT, sent));
+            assertEquals(count, transfer.exportFile(MessageRegistry.Kind.STORED, stored));
+        }
+
+        MessageRegistry target = new MessageRegistry();
+        try (MessageService service = new MessageService(target, new MessageLogStore(dir.resolve("target")))) {
+            MessageBulkTransfer transfer = new MessageBulkTransfer(target, service);
+            assertEquals(count, transfer.importFile(sent, MessageRegistry.Kind.SENT, dir.resolve("r1.csv")).getImported());
+            assertEquals(count, transfer.importFile(stored, MessageRegistry.Kind.STORED, dir.resolve("r2.csv")).getImported());
+            assertEquals(0, transfer.importFile(sent, MessageRegistry.Kind.SENT, dir.resolve("r3.csv")).getImported());
+            assertEquals(count + 1, Files.readAllLines(dir.resolve("r3.csv")).size());
+        }
+        // Service workers may register batches in any order, so compare by ID
+        assertEquals(count, target.sentCount());
+        for (Message m : source.sentCursor()) {
+            assertEquals(m.getMessageHash(), target.findSentByID(m.getMessageID()).getMessageHash());
+        }
+        assertEquals(count, target.storedCount());
+    }
+
+    @Test
+    public void testChunkTheServiceCannotWriteIsRejectedAndImportGoesOn() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        registry.addListener(new MessageRegistry.Listener() {
+            @Override
+            public void added(MessageRegistry.Kind kind, Message message, long sequence) {
+                if (message.getMessage().equals("fail me")) {
+                    throw new java.io.UncheckedIOException(new java.io.IOException("disk full"));
+                }
+            }
+
+            @Override
+            public void removed(MessageRegistry.Kind kind, Message message, long sequence) {
+            }
+
+            @Override
+            public void cleared(MessageRegistry.Kind kind) {
+            }
+        });
+        StringBuilder ndjson = new StringBuilder("{\"messageNumber\":0,\"recipient\":\"+27834557896\",\"message\":\"fail me\"}\n");
+        for (int i = 1; i <= MessageBulkTransfer.CHUNK_LINES; i++) {
+            ndjson.append("{\"messageNumber\":").append(i).append(",\"recipient\":\"+27834557896\",\"message\":\"Bulk message ")
+                    .append(i).append("\"}\n");
+        }
+        Path ids = dir.resolve("ids").resolve("message_id.hwm");
+
+        StringWriter report = new StringWriter();
+        try (MessageService service = new MessageService(registry, new MessageLogStore(dir.resolve("store")))) {
+            MessageBulkTransfer transfer = new MessageBulkTransfer(registry, service, new MessageIdAllocator(ids),
+                    java.util.concurrent.ForkJoinPool.commonPool());
+            MessageBulkTransfer.ImportResult result = transfer.importMessages(new StringReader(ndjson.toString()),
+                    MessageRegistry.Kind.SENT, report);
+
+            assertEquals(MessageBulkTransfer.CHUNK_LINES + 1, result.getLinesRead());
+            assertEquals(1, result.getImported());
+            assertEquals(MessageBulkTransfer.CHUNK_LINES, result.getRejected());
+        }
+        String[] rows = report.toString().split("\r\n");
+        assertEquals(MessageBulkTransfer.CHUNK_LINES + 1, rows.length);
+        assertTrue(rows[1].startsWith("1,") && rows[1].endsWith("," + MessageBulkTransfer.IO_ERROR));
+        // New IDs came from the allocator the transfer was given
+        assertTrue(Files.exists(ids));
+    }
+}
@@ -0,0 +1,76 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageCodecTest {
+
+    @TempDir
+    Path dir;
+
+    public MessageCodecTest() {
+    }
+
+    @Test
+    public void testBinaryRoundTrip() {
+        Message original = new Message(-3, "+27718693002", "Héllo wörld 👋 – dinner at 7?");
+        byte[] bytes = BinaryMessageCodec.INSTANCE.encode(original);
+        Message copy = BinaryMessageCodec.INSTANCE.decode(ByteBuffer.wrap(bytes));
+        assertMessageEquals(original, copy);
+    }
+
+    @Test
+    public void testBinaryRoundTripFromDirectBuffer() {
+        Message original = new Message(7, "+27718693002", "x".repeat(2000));
+        byte[] bytes = BinaryMessageCodec.INSTANCE.encode(original);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertMessageEquals(original, BinaryMessageCodec.INSTANCE.decode(direct));
+    }
+
+    @Test
+    public void testBinaryIsSmallerThanJson() {
+        Message m = new Message(2, "+27718693002", "Hi Mike, can you join us for dinner tonight");
+        assertTrue(BinaryMessageCodec.INSTANCE.encode(m).length < JsonMessageCodec.INSTANCE.encode(m).length);
+    }
+
+    @Test
+    public void testJsonReadsFilesWithoutVersion() {
+        String legacy = "{\"messageID\":\"1234567890\",\"messageNumber\":2,\"recipient\":\"+27718693002\","
+                + "\"message\":\"Hello again\",\"messageHash\":\"12:2:HELLOAGAIN\"}";
+        Message m = Message.fromJson(legacy);
+        assertEquals("1234567890", m.getMessageID());
+        assertEquals(2, m.getMessageNumber());
+        assertEquals("+27718693002", m.getRecipient());
+        assertEquals("Hello again", m.getMessage());
+        assertEquals("12:2:HELLOAGAIN", m.getMessageHash());
+    }
+
+    @Test
+    public void testStoreReadsRecordsWrittenWithJsonCodec() throws Exception {
+        Message m = new Message(1, "+27834557896", "Did you get the cake?");
+        MessageLogStore jsonStore = new MessageLogStore(dir, MessageLogStore.DEFAULT_MAX_SEGMENT_BYTES, JsonMessageCodec.INSTANCE);
+        jsonStore.append(m);
+        jsonStore.close();
+
+        MessageLogStore binaryStore = new MessageLogStore(dir);
+        Message n = new Message(2, "+27834557896", "It is dinner time !");
+        binaryStore.append(n);
+        List<Message> loaded = binaryStore.loadAll();
+        assertEquals(2, loaded.size());
+        assertMessageEquals(m, loaded.get(0));
+        assertMessageEquals(n, loaded.get(1));
+    }
+
+    private static void assertMessageEquals(Message expected, Message actual) {
+        assertEquals(expected.getMessageID(), actual.getMessageID());
+        assertEquals(expected.getMessageNumber(), actual.getMessageNumber());
+        assertEquals(expected.getRecipient(), actual.getRecipient());
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertEquals(expected.getMessageHash(), actual.getMessageHash());
+    }
+}
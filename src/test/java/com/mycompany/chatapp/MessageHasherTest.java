@@ -0,0 +1,64 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageHasherTest {
+
+    public MessageHasherTest() {
+    }
+
+    // The split-based hash the hasher replaced
+    private static String splitHash(String messageID, int messageNumber, String message) {
+        String firstTwo = messageID.substring(0, 2);
+        String[] words = message.trim().split("\\s+");
+        String firstWord = words.length > 0 ? words[0].toUpperCase() : "";
+        String lastWord = words.length > 1 ? words[words.length - 1].toUpperCase() : firstWord;
+        return firstTwo + ":" + messageNumber + ":" + firstWord + lastWord;
+    }
+
+    @Test
+    public void testKnownHashes() {
+        assertEquals("12:0:HITONIGHT", MessageHasher.hash("1234567890", 0, "Hi Mike, can you join us for dinner tonight"));
+        assertEquals("12:3:HELLOHELLO", MessageHasher.hash("1234567890", 3, "  hello  "));
+        assertEquals("12:3:", MessageHasher.hash("1234567890", 3, "   "));
+        assertEquals("12:3:STRASSEÖL", MessageHasher.hash("1234567890", 3, "straße\töl"));
+    }
+
+    @Test
+    public void testMatchesSplitHash() {
+        Random random = new Random(7);
+        String alphabet = "ab Z\t\n\r\u000B\f\u0001.ßé";
+        for (int i = 0; i < 50_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String text = sb.toString();
+            assertEquals(splitHash("9876543210", i, text), MessageHasher.hash("9876543210", i, text), text);
+        }
+    }
+
+    @Test
+    public void testRehashAllRepairsStaleHashes() {
+        MessageRegistry registry = new MessageRegistry();
+        Message good = new Message(1, "+27834557896", "Did you get the cake?");
+        Message stale = new Message("1234567890", 2, "+27834557896", "It is dinner time !", "12:2:WRONG");
+        registry.addSent(good);
+        registry.addSent(stale);
+
+        assertEquals(1, registry.rehashAll(false));
+        assertEquals("12:2:WRONG", stale.getMessageHash());
+
+        assertEquals(1, registry.rehashAll(true));
+        Message repaired = registry.findSentByHash("12:2:IT!");
+        assertEquals(stale.getMessageID(), repaired.getMessageID());
+        assertSame(repaired, registry.findSentByID(stale.getMessageID()));
+        assertNull(registry.findSentByHash("12:2:WRONG"));
+        assertEquals(List.of(good, repaired), registry.getSentMessages());
+        assertEquals(0, registry.rehashAll(false));
+    }
+}
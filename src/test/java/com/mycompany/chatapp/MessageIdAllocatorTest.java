@@ -0,0 +1,82 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageIdAllocatorTest {
+
+    @TempDir
+    Path dir;
+
+    public MessageIdAllocatorTest() {
+    }
+
+    @Test
+    public void testIdsAreTenDigits() {
+        MessageIdAllocator allocator = new MessageIdAllocator(dir.resolve("ids.hwm"));
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(allocator.nextId().matches("\\d{10}"));
+        }
+    }
+
+    @Test
+    public void testIdsAreUniqueAcrossThreads() throws Exception {
+        MessageIdAllocator allocator = new MessageIdAllocator(dir.resolve("ids.hwm"));
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    assertTrue(ids.add(allocator.nextId()));
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+        assertEquals(80_000, ids.size());
+    }
+
+    @Test
+    public void testIdsAreUniqueAcrossRestarts() {
+        Path mark = dir.resolve("ids.hwm");
+        Set<String> ids = new HashSet<>();
+        MessageIdAllocator first = new MessageIdAllocator(mark);
+        for (int i = 0; i < 500; i++) {
+            ids.add(first.nextId());
+        }
+        MessageIdAllocator second = new MessageIdAllocator(mark);
+        for (int i = 0; i < 500; i++) {
+            assertTrue(ids.add(second.nextId()));
+        }
+    }
+
+    @Test
+    public void testMarkIsWrittenWhereverItIsPlaced() throws Exception {
+        Path mark = dir.resolve("ids").resolve("message_id.hwm");
+        new MessageIdAllocator(mark).nextId();
+        assertTrue(java.nio.file.Files.exists(mark));
+        assertFalse(java.nio.file.Files.exists(mark.resolveSibling("message_id.hwm.tmp")));
+        assertTrue(Long.parseLong(java.nio.file.Files.readString(mark)) >= MessageIdAllocator.RESERVE_BLOCK);
+    }
+
+    @Test
+    public void testFormatIsOneToOne() {
+        Set<String> ids = new HashSet<>();
+        for (long n = 0; n < 100_000; n++) {
+            assertTrue(ids.add(MessageIdAllocator.format(n)));
+        }
+    }
+}
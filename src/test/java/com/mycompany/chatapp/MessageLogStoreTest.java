@@ -0,0 +1,128 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageLogStoreTest {
+
+    @TempDir
+    Path dir;
+
+    public MessageLogStoreTest() {
+    }
+
+    @Test
+    public void testAppendAndReloadKeepsLiveMessages() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir);
+        Message m1 = new Message(1, "+27834557896", "Did you get the cake?");
+        Message m2 = new Message(2, "+27838884567", "It is dinner time !");
+        store.append(m1);
+        store.append(m2);
+        store.delete(m1.getMessageID());
+        store.close();
+
+        MessageLogStore reopened = new MessageLogStore(dir);
+        List<Message> loaded = reopened.loadAll();
+        assertEquals(1, loaded.size());
+        assertEquals(m2.getMessageID(), loaded.get(0).getMessageID());
+        assertEquals(m2.getMessageHash(), loaded.get(0).getMessageHash());
+        assertNull(reopened.read(m1.getMessageID()));
+        assertEquals(m2.getMessage(), reopened.read(m2.getMessageID()).getMessage());
+    }
+
+    @Test
+    public void testSegmentsRollAtSizeCap() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir, 256);
+        for (int i = 0; i < 20; i++) {
+            store.append(new Message(i, "+27834557896", "Message number " + i));
+        }
+        assertTrue(segmentCount() > 1);
+        assertEquals(20, store.loadAll().size());
+    }
+
+    @Test
+    public void testCompactionDropsDeletedRecords() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir, 256);
+        Message keep = new Message(0, "+27834557896", "keep me");
+        store.append(keep);
+        List<Message> deleted = new java.util.ArrayList<>();
+        for (int i = 1; i < 20; i++) {
+            Message m = new Message(i, "+27834557896", "Message number " + i);
+            store.append(m);
+            deleted.add(m);
+        }
+        for (Message m : deleted) {
+            store.delete(m.getMessageID());
+        }
+        store.compact();
+        assertFalse(Files.exists(dir.resolve("segment_00000001.log")));
+        store.close();
+
+        MessageLogStore reopened = new MessageLogStore(dir, 256);
+        List<Message> loaded = reopened.loadAll();
+        assertEquals(1, loaded.size());
+        assertEquals(keep.getMessageID(), loaded.get(0).getMessageID());
+    }
+
+    @Test
+    public void testTombstoneIsDroppedOnceNoOlderSegmentHoldsTheRecord() throws Exception {
+        // A cap of one byte puts every record in a segment of its own
+        MessageLogStore store = new MessageLogStore(dir, 1);
+        Message keep = new Message(0, "+27834557896", "keep me");
+        Message gone = new Message(1, "+27834557896", "delete me");
+        store.append(keep);
+        store.append(gone);
+        store.delete(gone.getMessageID());
+        store.append(new Message(2, "+27834557896", "after the delete"));
+        store.compact();
+        assertEquals(2, segmentCount());
+        store.close();
+
+        MessageLogStore reopened = new MessageLogStore(dir, 1);
+        assertEquals(2, reopened.loadAll().size());
+        assertNull(reopened.read(gone.getMessageID()));
+    }
+
+    @Test
+    public void testOverlongMessageIDIsRejected() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir);
+        Message m = new Message("1".repeat(300), 1, "+27834557896", "too long an ID", "00:1:TOOLONGANID");
+        assertThrows(IllegalArgumentException.class, () -> store.append(m));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir);
+        Message m = new Message(1, "+27834557896", "Did you get the cake?");
+        store.append(m);
+        store.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(java.nio.ByteBuffer.wrap(new byte[]{0, 0, 0, 50, 1, 2}));
+        }
+
+        MessageLogStore reopened = new MessageLogStore(dir);
+        assertEquals(1, reopened.loadAll().size());
+        reopened.append(new Message(2, "+27834557896", "after the tear"));
+        reopened.close();
+        assertEquals(2, new MessageLogStore(dir).loadAll().size());
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
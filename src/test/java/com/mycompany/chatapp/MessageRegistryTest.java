@@ -0,0 +1,187 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageRegistryTest {
+
+    public MessageRegistryTest() {
+    }
+
+    @Test
+    public void testFindSentByID() {
+        MessageRegistry registry = new MessageRegistry();
+        Message m = new Message(1, "+27834557896", "Did you get the cake?");
+        registry.addSent(m);
+
+        assertSame(m, registry.findSentByID(m.getMessageID()));
+        assertNull(registry.findSentByID("0000000000x"));
+    }
+
+    @Test
+    public void testRemoveSentByHashUpdatesIndexes() {
+        MessageRegistry registry = new MessageRegistry();
+        Message m = new Message(2, "+27834557867", "Where are you? You are late! I have asked you to be on time.");
+        registry.addSent(m);
+
+        assertSame(m, registry.removeSentByHash(m.getMessageHash()));
+        assertEquals(0, registry.sentCount());
+        assertNull(registry.findSentByID(m.getMessageID()));
+        assertFalse(registry.containsMessageHash(m.getMessageHash()));
+        assertTrue(registry.findByRecipient("+27834557867").isEmpty());
+        assertNull(registry.removeSentByHash(m.getMessageHash()));
+    }
+
+    @Test
+    public void testFindByRecipientReturnsSentThenStored() {
+        MessageRegistry registry = new MessageRegistry();
+        Message stored = new Message(1, "+27838884567", "Ok, I am leaving without you.");
+        Message sent = new Message(2, "+27838884567", "It is dinner time !");
+        Message other = new Message(3, "+27834557896", "Did you get the cake?");
+        registry.addStored(stored);
+        registry.addSent(sent);
+        registry.addSent(other);
+
+        List<Message> found = registry.findByRecipient("+27838884567");
+        assertEquals(List.of(sent, stored), found);
+    }
+
+    @Test
+    public void testSentOrderIsPreserved() {
+        MessageRegistry registry = new MessageRegistry();
+        Message m1 = new Message(1, "+27834557896", "first");
+        Message m2 = new Message(2, "+27834557896", "second");
+        Message m3 = new Message(3, "+27834557896", "third");
+        registry.addSent(m1);
+        registry.addSent(m2);
+        registry.addSent(m3);
+        registry.removeSent(m2);
+
+        assertEquals(List.of(m1, m3), List.copyOf(registry.getSentMessages()));
+    }
+
+    @Test
+    public void testConcurrentSendAndDelete() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    Message m = new Message(i, "+2783455789" + thread, "Message " + i);
+                    registry.addSent(m);
+                    if (i % 2 == 0) {
+                        assertTrue(registry.removeSent(m));
+                    }
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertEquals(8000, registry.sentCount());
+        assertEquals(8000, registry.getSentMessages().size());
+        assertEquals(16000, registry.totalSent());
+        for (int t = 0; t < 8; t++) {
+            assertEquals(1000, registry.findByRecipient("+2783455789" + t).size());
+        }
+    }
+
+    @Test
+    public void testSentTextLivesInTheArenaUntilRemoved() {
+        MessageArena arena = new MessageArena();
+        MessageRegistry registry = new MessageRegistry(arena);
+        Message m1 = new Message(1, "+27834557896", "Did you get the cake?");
+        Message m2 = new Message(2, "+27838884567", "It is dinner time !");
+        Message stale = new Message("1234567890", 3, "+27838884567", "Ok, I am leaving without you.", "12:3:WRONG");
+        registry.addSent(m1);
+        registry.addSent(m2);
+        registry.addSent(stale);
+        assertEquals(3, arena.size());
+        assertEquals("Did you get the cake?", m1.getMessage());
+        assertEquals(21, m1.getMessageLength());
+
+        // Deleting by hash frees the entry; the removed message keeps its text
+        assertSame(m1, registry.removeSentByHash(m1.getMessageHash()));
+        assertEquals(2, arena.size());
+        assertEquals("Did you get the cake?", m1.getMessage());
+
+        assertEquals(1, registry.rehashAll(true));
+        assertEquals(2, arena.size());
+        assertEquals("Ok, I am leaving without you.", registry.findSentByID("1234567890").getMessage());
+        assertEquals("Ok, I am leaving without you.", stale.getMessage());
+
+        registry.clear();
+        assertEquals(0, arena.size());
+        assertEquals("It is dinner time !", m2.getMessage());
+    }
+
+    @Test
+    public void testArenaSpaceIsReclaimedAfterDeletesByHash() {
+        MessageArena arena = new MessageArena();
+        MessageRegistry registry = new MessageRegistry(arena);
+        List<Message> sent = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            Message m = new Message(i, "+27834557896", "Bulk message " + i + " " + "x".repeat(200));
+            registry.addSent(m);
+            sent.add(m);
+        }
+        long full = arena.bytesUsed();
+        for (Message m : sent) {
+            assertSame(m, registry.removeSentByHash(m.getMessageHash()));
+        }
+        assertEquals(0, arena.size());
+        assertTrue(arena.bytesUsed() < full - 2 * MessageArena.SLAB_BYTES);
+        // Freed slots are used again rather than growing the columns
+        long emptied = arena.bytesUsed();
+        for (int i = 0; i < 1000; i++) {
+            registry.addSent(new Message(i, "+27834557896", "Again " + i));
+        }
+        assertEquals(emptied, arena.bytesUsed());
+    }
+
+    @Test
+    public void testArenaTextStaysCorrectUnderConcurrentDeletes() throws Exception {
+        MessageArena arena = new MessageArena();
+        MessageRegistry registry = new MessageRegistry(arena);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                List<Message> mine = new ArrayList<>();
+                for (int i = 0; i < 5000; i++) {
+                    // The first word keeps hashes distinct between threads
+                    String text = "T" + thread + " message " + i + " " + "y".repeat(i % 200);
+                    Message m = new Message(i, "+2783455789" + thread, text);
+                    registry.addSent(m);
+                    mine.add(m);
+                    if (i % 4 != 0) {
+                        assertSame(m, registry.removeSentByHash(m.getMessageHash()));
+                    }
+                    // Slots are freed and reused and slabs compacted by the other threads meanwhile
+                    Message earlier = mine.get(i / 2);
+                    assertTrue(earlier.getMessage().startsWith("T" + thread + " message " + (i / 2) + " "));
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertEquals(10_000, registry.sentCount());
+        assertEquals(10_000, arena.size());
+        for (Message m : registry.getSentMessages()) {
+            assertEquals(m.getMessageLength(), m.getMessage().length());
+        }
+    }
+}
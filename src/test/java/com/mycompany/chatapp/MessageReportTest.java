@@ -0,0 +1,69 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import java.io.StringWriter;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageReportTest {
+
+    public MessageReportTest() {
+    }
+
+    @Test
+    public void testTextReportMatchesDialogFormat() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        Message m = new Message(1, "+27834557896", "Did you get the cake?");
+        registry.addSent(m);
+
+        StringWriter out = new StringWriter();
+        long rows = new MessageReport(registry).write(MessageReport.Type.SENDER_RECIPIENT, MessageReport.Format.TEXT, out);
+
+        assertEquals(1, rows);
+        assertEquals("Sender and Recipient of Sent Messages:\nSender: Me\nRecipient: +27834557896\n\n", out.toString());
+    }
+
+    @Test
+    public void testCsvQuotesFields() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        Message m = new Message(1, "+27834557896", "Say \"hi\", then go");
+        registry.addSent(m);
+
+        StringWriter out = new StringWriter();
+        new MessageReport(registry).write(MessageReport.Type.FULL, MessageReport.Format.CSV, out);
+
+        assertEquals("messageID,messageHash,recipient,message\r\n"
+                + m.getMessageID() + "," + m.getMessageHash() + ",+27834557896,\"Say \"\"hi\"\", then go\"\r\n", out.toString());
+    }
+
+    @Test
+    public void testNdjsonWritesOneMessagePerLine() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        registry.addSent(new Message(1, "+27834557896", "Did you get the cake?"));
+        registry.addSent(new Message(2, "+27838884567", "It is dinner time !"));
+
+        StringWriter out = new StringWriter();
+        new MessageReport(registry).write(MessageReport.Type.FULL, MessageReport.Format.NDJSON, out);
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("It is dinner time !", JsonMessageCodec.INSTANCE.fromJson(lines[1]).getMessage());
+    }
+
+    @Test
+    public void testPagesFollowCursor() {
+        MessageRegistry registry = new MessageRegistry();
+        for (int i = 0; i < 25; i++) {
+            registry.addSent(new Message(i, "+27834557896", "Message " + i));
+        }
+
+        MessageRegistry.Page first = registry.sentPage(0, 10);
+        MessageRegistry.Page second = registry.sentPage(first.getLastSequence(), 10);
+        MessageRegistry.Page third = registry.sentPage(second.getLastSequence(), 10);
+
+        assertTrue(first.hasMore());
+        assertEquals("Message 10", second.getMessages().get(0).getMessage());
+        assertEquals(5, third.getMessages().size());
+        assertFalse(third.hasMore());
+        assertEquals(3, MessageReport.pageCount(registry.sentCount(), 10));
+    }
+}
@@ -0,0 +1,96 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageServiceTest {
+
+    @TempDir
+    Path dir;
+
+    public MessageServiceTest() {
+    }
+
+    @Test
+    public void testSendBatchKeepsOrderAndReportsFailures() {
+        MessageRegistry registry = new MessageRegistry();
+        try (MessageService service = new MessageService(registry, new MessageLogStore(dir), 4, 2, 8)) {
+            List<Message> messages = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                messages.add(new Message(i, "+27834557896", "Bulk message " + i));
+            }
+            messages.add(new Message(100, "08575975889", "Bad number"));
+            messages.add(new Message(101, "+27834557896", "x".repeat(260)));
+
+            List<MessageService.SendResult> results = service.send(messages).join();
+            assertEquals(messages.size(), results.size());
+            for (int i = 0; i < 100; i++) {
+                assertSame(messages.get(i), results.get(i).getMessage());
+                assertEquals(MessageService.Status.SENT, results.get(i).getStatus());
+            }
+            assertEquals(MessageService.Status.INVALID_RECIPIENT, results.get(100).getStatus());
+            assertEquals(MessageService.Status.MESSAGE_TOO_LONG, results.get(101).getStatus());
+            assertEquals(100, registry.sentCount());
+        }
+    }
+
+    @Test
+    public void testStorePersistsToMessageStore() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        MessageLogStore store = new MessageLogStore(dir);
+        try (MessageService service = new MessageService(registry, store)) {
+            Message m = new Message(1, "+27838884567", "It is dinner time !");
+            MessageService.SendResult result = service.store(List.of(m)).join().get(0);
+
+            assertEquals(MessageService.Status.STORED, result.getStatus());
+            assertEquals(1, registry.storedCount());
+            assertEquals(m.getMessage(), store.read(m.getMessageID()).getMessage());
+        }
+    }
+
+    @Test
+    public void testTamperedHashIsRejected() {
+        MessageRegistry registry = new MessageRegistry();
+        try (MessageService service = new MessageService(registry, new MessageLogStore(dir))) {
+            Message original = new Message(1, "+27838884567", "It is dinner time !");
+            Message tampered = new Message(original.getMessageID(), 1, "+27838884567", "Lunch is ready", original.getMessageHash());
+            MessageService.SendResult result = service.send(List.of(tampered)).join().get(0);
+
+            assertEquals(MessageService.Status.HASH_MISMATCH, result.getStatus());
+            assertEquals(0, registry.sentCount());
+        }
+    }
+
+    @Test
+    public void testRepairedHashesAreIndexedAndPersisted() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        SentMessageJournal journal = new SentMessageJournal(dir.resolve("journal"));
+        journal.recover(registry);
+        FullTextIndex textIndex = new FullTextIndex(registry);
+        MessageLogStore store = new MessageLogStore(dir.resolve("store"));
+        Message sent = new Message("1234567890", 2, "+27834557896", "It is dinner time !", "12:2:WRONG");
+        Message stored = new Message("1234567891", 3, "+27834557896", "Where are you?", "12:3:WRONG");
+        registry.addSent(sent);
+        store.append(stored);
+        registry.addStored(stored);
+
+        try (MessageService service = new MessageService(registry, store)) {
+            assertEquals(2, service.repairHashes().join());
+        }
+        String sentHash = MessageHasher.hash("1234567890", 2, "It is dinner time !");
+        String storedHash = MessageHasher.hash("1234567891", 3, "Where are you?");
+        assertEquals(sentHash, textIndex.search("dinner", 10).get(0).getMessageHash());
+        assertEquals(storedHash, registry.findStoredByID("1234567891").getMessageHash());
+        assertEquals(storedHash, store.read("1234567891").getMessageHash());
+        journal.close();
+
+        MessageRegistry restored = new MessageRegistry();
+        new SentMessageJournal(dir.resolve("journal")).recover(restored);
+        assertEquals(1, restored.sentCount());
+        assertEquals(sentHash, restored.findSentByID("1234567890").getMessageHash());
+    }
+}
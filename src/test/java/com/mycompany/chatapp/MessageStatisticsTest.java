@@ -0,0 +1,52 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageStatisticsTest {
+
+    public MessageStatisticsTest() {
+    }
+
+    @Test
+    public void testLongestStaysCorrectAfterDelete() {
+        MessageRegistry registry = new MessageRegistry();
+        MessageStatistics statistics = new MessageStatistics(registry);
+        Message shortest = new Message(1, "+27834557896", "Hi");
+        Message longest = new Message(2, "+27834557896", "Where are you? You are late! I have asked you to be on time.");
+        Message middle = new Message(3, "+27838884567", "It is dinner time !");
+        registry.addSent(shortest);
+        registry.addSent(longest);
+        registry.addSent(middle);
+
+        assertSame(longest, statistics.longest(MessageRegistry.Kind.SENT));
+        assertEquals(List.of(longest, middle), statistics.topLongest(MessageRegistry.Kind.SENT, 2));
+
+        registry.removeSent(longest);
+        assertSame(middle, statistics.longest(MessageRegistry.Kind.SENT));
+        assertEquals(List.of(middle, shortest), statistics.topLongest(MessageRegistry.Kind.SENT, 5));
+    }
+
+    @Test
+    public void testRecipientCountsAndHistogram() {
+        MessageRegistry registry = new MessageRegistry();
+        registry.addSent(new Message(1, "+27834557896", "Did you get the cake?"));
+        MessageStatistics statistics = new MessageStatistics(registry);
+        Message second = new Message(2, "+27834557896", "Hi");
+        registry.addSent(second);
+        registry.addStored(new Message(3, "+27838884567", "Ok, I am leaving without you."));
+
+        assertEquals(2, statistics.recipientCount(MessageRegistry.Kind.SENT, "+27834557896"));
+        assertEquals(1, statistics.recipientCount(MessageRegistry.Kind.STORED, "+27838884567"));
+        assertEquals(2, statistics.lengthHistogram(MessageRegistry.Kind.SENT)[0]);
+
+        registry.removeSent(second);
+        assertEquals(1, statistics.recipientCount(MessageRegistry.Kind.SENT, "+27834557896"));
+        assertEquals(1, statistics.lengthHistogram(MessageRegistry.Kind.SENT)[0]);
+
+        registry.clear();
+        assertNull(statistics.longest(MessageRegistry.Kind.STORED));
+        assertTrue(statistics.recipientCounts(MessageRegistry.Kind.SENT).isEmpty());
+    }
+}
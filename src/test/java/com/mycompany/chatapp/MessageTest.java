@@ -58,18 +58,18 @@ public class MessageTest {
 
         
         
-        Message.messageList.clear();
-        Message.totalMessagesSent = 0;
+        Message.registry.clear();
+        assertEquals(0, Message.registry.totalSent());
         
         
         
         // Simulate sending
-        Message.messageList.add(send);
-        Message.totalMessagesSent++;
-        assertTrue(Message.messageList.contains(send));
+        Message.registry.addSent(send);
+        assertEquals(1, Message.registry.totalSent());
+        assertTrue(Message.registry.containsSent(send));
 
         // Simulate discard (nothing added)
-        assertFalse(Message.messageList.contains(discard));
+        assertFalse(Message.registry.containsSent(discard));
 
         // Simulate store (file created, message not added)
         boolean result = discard.writeMessageToFile("test_message_" + discard.getMessageID() + ".json");
@@ -92,15 +92,15 @@ public class MessageTest {
     
     @Test
     public void testSentMessagesArrayCorrectlyPopulated() {
-        Message.messageList.clear();
+        Message.registry.clear();
         Message m1 = new Message(1, "+27834557896", "Did you get the cake?");
         Message m4 = new Message(1, "0838884567", "It is dinner time !");
-        Message.messageList.add(m1);
-        Message.messageList.add(m4);
+        Message.registry.addSent(m1);
+        Message.registry.addSent(m4);
 
-        assertEquals(2, Message.messageList.size());
-        assertTrue(Message.messageList.stream().anyMatch(m -> m.getMessage().equals("Did you get the cake?")));
-        assertTrue(Message.messageList.stream().anyMatch(m -> m.getMessage().equals("It is dinner time !")));
+        assertEquals(2, Message.registry.sentCount());
+        assertTrue(Message.registry.getSentMessages().stream().anyMatch(m -> m.getMessage().equals("Did you get the cake?")));
+        assertTrue(Message.registry.getSentMessages().stream().anyMatch(m -> m.getMessage().equals("It is dinner time !")));
     }
 
     @Test
@@ -116,12 +116,12 @@ public class MessageTest {
 
     @Test
     public void testSearchByMessageID() {
-        Message.messageList.clear();
+        Message.registry.clear();
         Message m4 = new Message(1, "0838884567", "It is dinner time !");
-        Message.messageList.add(m4);
+        Message.registry.addSent(m4);
 
         String searchID = m4.getMessageID();
-        Message found = Message.messageList.stream()
+        Message found = Message.registry.getSentMessages().stream()
                 .filter(m -> m.getMessageID().equals(searchID))
                 .findFirst()
                 .orElse(null);
@@ -164,11 +164,11 @@ public class MessageTest {
     public void testDisplayReportFormat() {
         Message m1 = new Message(1, "+27834557896", "Did you get the cake?");
         Message m2 = new Message(1, "0838884567", "It is dinner time !");
-        Message.messageList.clear();
-        Message.messageList.add(m1);
-        Message.messageList.add(m2);
+        Message.registry.clear();
+        Message.registry.addSent(m1);
+        Message.registry.addSent(m2);
 
-        for (Message m : Message.messageList) {
+        for (Message m : Message.registry.getSentMessages()) {
             assertNotNull(m.getMessageHash());
             assertNotNull(m.getRecipient());
             assertNotNull(m.getMessage());
@@ -0,0 +1,64 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    public MetricsTest() {
+    }
+
+    @Test
+    public void testHistogramPercentilesAreWithinBucketWidth() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1000);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000L, histogram.getMax());
+        assertEquals(50_000_500.0, histogram.getMean(), 1.0);
+        assertEquals(50_000_000, histogram.getValueAtPercentile(50), 50_000_000 * 0.035);
+        assertEquals(99_000_000, histogram.getValueAtPercentile(99), 99_000_000 * 0.035);
+        assertEquals(100_000_000L, histogram.getValueAtPercentile(100));
+        for (long v : new long[] {0, 1, 31, 32, 63, 64, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(v);
+            assertTrue(LatencyHistogram.highestEquivalent(index) >= v);
+            assertTrue(index == 0 || LatencyHistogram.highestEquivalent(index - 1) < v);
+        }
+        histogram.reset();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testServiceTimesSendsAndPublishesOverJmx() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        Metrics metrics = new Metrics();
+        MessageLogStore store = new MessageLogStore(java.nio.file.Files.createTempDirectory("metrics-test"));
+        try (MessageService service = new MessageService(registry,
+                new WriteBehindWriter(store, WriteBehindWriter.Durability.NONE), 2, 16, 4, metrics)) {
+            Message ok = new Message(1, "+27834557896", "Did you get the cake?");
+            Message bad = new Message(2, "08575975889", "Where are you?");
+            service.send(List.of(ok, bad)).join();
+        }
+        store.close();
+
+        Metrics.Operation send = metrics.operation("send");
+        assertEquals(2, send.getCount());
+        assertEquals(1, send.getErrors());
+        assertTrue(metrics.dump().contains("send"));
+
+        assertTrue(metrics.registerMBeans());
+        assertNull(metrics.getJmxFailure());
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.mycompany.chatapp:type=Metrics,name=" + ObjectName.quote("send"));
+        assertTrue(server.isRegistered(name));
+        assertTrue(server.getAttribute(name, "Count") instanceof Long);
+        assertTrue(server.getAttribute(name, "P99Micros") instanceof Double);
+        metrics.operation("query.keyword").record(System.nanoTime());
+        assertArrayEquals(new String[] {"query.keyword", "send", "store"}, metrics.getOperationNames());
+    }
+}
@@ -0,0 +1,46 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecipientNumberTest {
+
+    public RecipientNumberTest() {
+    }
+
+    @Test
+    public void testValidNumbersEncodeAsTheirDigits() {
+        assertEquals(27834557896L, RecipientNumber.encode("+27834557896"));
+        assertEquals("+27834557896", RecipientNumber.decode(27834557896L));
+        assertEquals("+27000000001", RecipientNumber.decode(RecipientNumber.encode("+27000000001")));
+        assertTrue(RecipientNumber.isValid(RecipientNumber.encode("+27834557896")));
+        assertEquals(RecipientNumber.NONE, RecipientNumber.encode(null));
+        assertNull(RecipientNumber.decode(RecipientNumber.NONE));
+    }
+
+    @Test
+    public void testInvalidRecipientsAreNotInterned() {
+        assertEquals(RecipientNumber.NONE, RecipientNumber.encode("08575975889"));
+        assertEquals(RecipientNumber.NONE, RecipientNumber.encode("bad"));
+        assertFalse(RecipientNumber.isValid(RecipientNumber.encode("08575975889")));
+
+        Message m = new Message("0000000001", 1, "+27838884567", "Hi", "00:1:HIHI");
+        assertEquals(27838884567L, m.getRecipientNumber());
+        assertEquals("+27838884567", m.getRecipient());
+
+        // The message keeps what it was given, and validation tells it apart from a missing number
+        Message invalid = new Message("0000000002", 2, "08575975889", "Hi", "00:2:HIHI");
+        assertEquals(RecipientNumber.NONE, invalid.getRecipientNumber());
+        assertEquals("08575975889", invalid.getRecipient());
+        assertFalse(invalid.checkRecipientCell());
+        assertEquals(ValidationCode.INVALID_PHONE, Validators.checkMessage(invalid));
+        assertEquals(ValidationCode.MISSING_VALUE,
+                Validators.checkMessage(new Message("0000000003", 3, null, "Hi", "00:3:HIHI")));
+
+        // Lookups with arbitrary text find nothing and index nothing
+        MessageRegistry registry = new MessageRegistry();
+        registry.addStored(invalid);
+        assertTrue(registry.findByRecipient("08575975889").isEmpty());
+        assertSame(invalid, registry.findStoredByID("0000000002"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SentMessageJournalTest {
+
+    @TempDir
+    Path dir;
+
+    public SentMessageJournalTest() {
+    }
+
+    @Test
+    public void testRecoversSendsAndDeletesFromLog() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        SentMessageJournal journal = new SentMessageJournal(dir);
+        journal.recover(registry);
+        Message m1 = new Message(1, "+27834557896", "Did you get the cake?");
+        Message m2 = new Message(2, "+27838884567", "It is dinner time !");
+        registry.addSent(m1);
+        registry.addSent(m2);
+        registry.removeSent(m1);
+        journal.close();
+
+        MessageRegistry restored = new MessageRegistry();
+        SentMessageJournal.RecoveryResult result = new SentMessageJournal(dir).recover(restored);
+        assertEquals(1, result.getMessages());
+        assertEquals(3, result.getRecordsReplayed());
+        assertEquals(1, restored.sentCount());
+        assertEquals(2, restored.totalSent());
+        assertEquals(m2.getMessageHash(), restored.getSentMessages().get(0).getMessageHash());
+    }
+
+    @Test
+    public void testSnapshotBoundsReplayAndRemovesOldLogs() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        SentMessageJournal journal = new SentMessageJournal(dir, 100);
+        journal.recover(registry);
+        for (int i = 0; i < 250; i++) {
+            Message m = new Message(i, "+27834557896", "Message " + i);
+            registry.addSent(m);
+            if (i % 5 == 0) {
+                registry.removeSent(m);
+            }
+        }
+        journal.snapshot();
+        Message last = new Message(250, "+27834557896", "after the snapshot");
+        registry.addSent(last);
+        journal.close();
+
+        assertEquals(1, logCount());
+        MessageRegistry restored = new MessageRegistry();
+        SentMessageJournal.RecoveryResult result = new SentMessageJournal(dir, 100).recover(restored);
+        assertEquals(1, result.getRecordsReplayed());
+        assertEquals(201, restored.sentCount());
+        assertEquals(251, restored.totalSent());
+        List<Message> sent = restored.getSentMessages();
+        assertEquals("Message 1", sent.get(0).getMessage());
+        assertEquals("after the snapshot", sent.get(200).getMessage());
+    }
+
+    @Test
+    public void testTornTailIsIgnored() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        SentMessageJournal journal = new SentMessageJournal(dir);
+        journal.recover(registry);
+        registry.addSent(new Message(1, "+27834557896", "Did you get the cake?"));
+        journal.close();
+
+        Path log;
+        try (Stream<Path> files = Files.list(dir)) {
+            log = files.filter(p -> p.getFileName().toString().startsWith("wal_")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(java.nio.ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1}));
+        }
+
+        MessageRegistry restored = new MessageRegistry();
+        SentMessageJournal reopened = new SentMessageJournal(dir);
+        reopened.recover(restored);
+        restored.addSent(new Message(2, "+27834557896", "after the tear"));
+        reopened.close();
+        assertEquals(2, restoredCount());
+    }
+
+    @Test
+    public void testConcurrentSendersAreAllRecovered() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        SentMessageJournal journal = new SentMessageJournal(dir, 1000);
+        journal.recover(registry);
+        Thread[] senders = new Thread[8];
+        for (int t = 0; t < senders.length; t++) {
+            int sender = t;
+            senders[t] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    registry.addSent(new Message(i, "+27834557896", "Sender " + sender + " message " + i));
+                }
+            });
+            senders[t].start();
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        journal.sync();
+        journal.close();
+
+        MessageRegistry restored = new MessageRegistry();
+        SentMessageJournal.RecoveryResult result = new SentMessageJournal(dir, 1000).recover(restored);
+        assertEquals(16_000, result.getMessages());
+        // Snapshots were taken along the way, so only the tail is replayed
+        assertTrue(result.getRecordsReplayed() < 16_000);
+        assertEquals(16_000, restored.totalSent());
+    }
+
+    private long logCount() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("wal_")).count();
+        }
+    }
+
+    private int restoredCount() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        new SentMessageJournal(dir).recover(registry);
+        return registry.sentCount();
+    }
+}
@@ -0,0 +1,49 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StoredMessageLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    public StoredMessageLoaderTest() {
+    }
+
+    @Test
+    public void testLoadKeepsAppendOrderAcrossSegments() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir.resolve("store"), 4096);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Message m = new Message(i, "+27834557896", "Stored message " + i);
+            store.append(m);
+            ids.add(m.getMessageID());
+        }
+
+        StoredMessageLoader.LoadResult result = new StoredMessageLoader().load(store);
+        assertEquals(2000, result.getMessages().size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(ids.get(i), result.getMessages().get(i).getMessageID());
+        }
+    }
+
+    @Test
+    public void testLoadJsonFilesSkipsUnreadableFiles() throws Exception {
+        Message m = new Message(1, "+27834557896", "Did you get the cake?");
+        Path good = dir.resolve("message_" + m.getMessageID() + ".json");
+        Path bad = dir.resolve("message_0000000000.json");
+        Files.writeString(good, m.toJson());
+        Files.writeString(bad, "{not json");
+
+        StoredMessageLoader.LoadResult result = new StoredMessageLoader().loadJsonFiles(List.of(good, bad));
+        assertEquals(2, result.getRecordsRead());
+        assertEquals(1, result.getMessages().size());
+        assertEquals(m.getMessageHash(), result.getMessages().get(0).getMessageHash());
+    }
+}
@@ -0,0 +1,130 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StoredMessageManifestTest {
+
+    @TempDir
+    Path dir;
+
+    public StoredMessageManifestTest() {
+    }
+
+    @Test
+    public void testOpensFromManifestAndLoadsBodiesOnDemand() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir);
+        Message m1 = new Message(1, "+27834557896", "Did you get the cake?");
+        Message m2 = new Message(2, "+27838884567", "It is dinner time !");
+        Message m3 = new Message(3, "+27838884567", "Ok, I am leaving without you.");
+        store.append(m1);
+        store.append(m2);
+        store.append(m3);
+        store.delete(m1.getMessageID());
+        assertTrue(store.writeManifest(List.of(m2, m3)));
+        store.close();
+
+        MessageLogStore reopened = new MessageLogStore(dir);
+        List<Message> summaries = reopened.openFromManifest();
+        assertNotNull(summaries);
+        assertEquals(2, summaries.size());
+        Message lazy = summaries.get(1);
+        assertEquals(m3.getMessageID(), lazy.getMessageID());
+        assertEquals(m3.getRecipient(), lazy.getRecipient());
+        assertEquals(m3.getMessageHash(), lazy.getMessageHash());
+        assertEquals(m3.getMessage(), lazy.getMessage());
+        assertEquals(2, reopened.size());
+    }
+
+    @Test
+    public void testIndexingFromManifestReadsNoBodies() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir);
+        Message m1 = new Message(1, "+27834557896", "Did you get the cake?");
+        Message m2 = new Message(2, "+27838884567", "Ok, I am leaving without you.");
+        store.append(m1);
+        store.append(m2);
+        assertTrue(store.writeManifest(List.of(m1, m2)));
+        store.close();
+
+        MessageLogStore reopened = new MessageLogStore(dir);
+        List<Message> summaries = reopened.openFromManifest();
+        reopened.close();
+        // With the segments gone, any body read would fail
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!file.getFileName().toString().equals("manifest.dat")) {
+                    Files.delete(file);
+                }
+            }
+        }
+
+        MessageRegistry registry = new MessageRegistry();
+        FullTextIndex textIndex = new FullTextIndex(registry);
+        MessageStatistics statistics = new MessageStatistics(registry);
+        for (Message m : summaries) {
+            registry.addStored(m);
+        }
+        assertEquals(List.of(m1.getMessageID()), ids(textIndex.search("cake", 10)));
+        assertEquals(List.of(m2.getMessageID()), ids(textIndex.search("leav*", 10)));
+        assertEquals(m2.getMessageID(), statistics.longest(MessageRegistry.Kind.STORED).getMessageID());
+        assertEquals(m2.getMessage().length(), summaries.get(1).getMessageLength());
+        registry.removeStored(m1.getMessageID());
+        assertTrue(textIndex.search("cake", 10).isEmpty());
+    }
+
+    private static List<String> ids(List<Message> messages) {
+        List<String> ids = new ArrayList<>();
+        for (Message m : messages) {
+            ids.add(m.getMessageID());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testDeletedBodyIsAnErrorNotNull() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir);
+        Message m1 = new Message(1, "+27834557896", "Did you get the cake?");
+        store.append(m1);
+        assertTrue(store.writeManifest(List.of(m1)));
+        store.close();
+
+        MessageLogStore reopened = new MessageLogStore(dir);
+        Message lazy = reopened.openFromManifest().get(0);
+        reopened.delete(m1.getMessageID());
+        assertThrows(java.io.UncheckedIOException.class, lazy::getMessage);
+        assertThrows(java.io.IOException.class, () -> MessageReport.write(MessageReport.Type.FULL,
+                MessageReport.Format.NDJSON, List.of(lazy), new java.io.StringWriter()));
+    }
+
+    @Test
+    public void testStaleManifestIsIgnored() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir);
+        Message m1 = new Message(1, "+27834557896", "Did you get the cake?");
+        store.append(m1);
+        assertTrue(store.writeManifest(List.of(m1)));
+        store.append(new Message(2, "+27838884567", "It is dinner time !"));
+        store.close();
+
+        MessageLogStore reopened = new MessageLogStore(dir);
+        assertNull(reopened.openFromManifest());
+        assertEquals(2, reopened.loadAll().size());
+    }
+
+    @Test
+    public void testIncompleteMessagesWriteNoManifest() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir);
+        Message m1 = new Message(1, "+27834557896", "Did you get the cake?");
+        store.append(m1);
+        store.append(new Message(2, "+27838884567", "It is dinner time !"));
+
+        assertFalse(store.writeManifest(List.of(m1)));
+        store.close();
+        assertNull(new MessageLogStore(dir).openFromManifest());
+    }
+}
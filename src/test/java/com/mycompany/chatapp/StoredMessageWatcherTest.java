@@ -0,0 +1,114 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StoredMessageWatcherTest {
+
+    @TempDir
+    Path dir;
+
+    public StoredMessageWatcherTest() {
+    }
+
+    @Test
+    public void testBurstOfFilesIsStoredAndDeletesAreFollowed() throws Exception {
+        Path drop = Files.createDirectory(dir.resolve("drop"));
+        MessageRegistry registry = new MessageRegistry();
+        MessageLogStore store = new MessageLogStore(dir.resolve("store"));
+        List<Path> files = new ArrayList<>();
+        try (MessageService service = new MessageService(registry, store);
+                StoredMessageWatcher watcher = new StoredMessageWatcher(drop, service)) {
+            watcher.start();
+            for (int i = 0; i < 200; i++) {
+                Message m = new Message(i + 1, "+27834557896", "Dropped message " + i);
+                Path file = drop.resolve("message_" + m.getMessageID() + ".json");
+                Files.writeString(file, m.toJson());
+                files.add(file);
+            }
+            awaitStoredCount(registry, 200);
+            long deadline = System.currentTimeMillis() + 15_000;
+            while (watcher.getFilesStored() < 200 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(200, watcher.getFilesStored());
+            assertTrue(watcher.getBatchesApplied() < 200);
+            assertEquals(200, store.size());
+            for (Path file : files) {
+                assertTrue(Files.exists(file));
+            }
+
+            for (Path file : files.subList(0, 50)) {
+                Files.delete(file);
+            }
+            awaitStoredCount(registry, 150);
+            deadline = System.currentTimeMillis() + 15_000;
+            while (watcher.getFilesRemoved() < 50 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(50, watcher.getFilesRemoved());
+            assertEquals(150, store.size());
+        }
+        store.close();
+    }
+
+    @Test
+    public void testFilesAreLeftInPlaceAndDeletedFilesAreRemoved() throws Exception {
+        MessageRegistry registry = new MessageRegistry();
+        MessageLogStore store = new MessageLogStore(dir.resolve("store"));
+        try (MessageService service = new MessageService(registry, store)) {
+            StoredMessageWatcher watcher = new StoredMessageWatcher(dir, service);
+            Message kept = new Message(1, "+27834557896", "Did you get the cake?");
+            Path keptFile = dir.resolve("message_" + kept.getMessageID() + ".json");
+            Files.writeString(keptFile, kept.toJson());
+            Message invalid = new Message(2, "08575975889", "Bad number");
+            Path invalidFile = dir.resolve("message_" + invalid.getMessageID() + ".json");
+            Files.writeString(invalidFile, invalid.toJson());
+            Path partialFile = dir.resolve("message_0000000003.json");
+            Files.writeString(partialFile, "{\"messageID\":");
+
+            List<Path> changes = new ArrayList<>();
+            changes.add(keptFile);
+            changes.add(invalidFile);
+            changes.add(partialFile);
+            // Reported as created, but removed again before the batch was applied
+            changes.add(dir.resolve("message_0000000004.json"));
+            watcher.apply(changes);
+
+            assertEquals(1, registry.storedCount());
+            assertNotNull(registry.findStoredByID(kept.getMessageID()));
+            assertTrue(store.contains(kept.getMessageID()));
+            assertTrue(Files.exists(keptFile));
+
+            // Validated like any other store, and left in place
+            assertFalse(store.contains(invalid.getMessageID()));
+            assertTrue(Files.exists(invalidFile));
+            assertTrue(Files.exists(partialFile));
+            assertEquals(1, watcher.getFilesStored());
+            assertEquals(1, watcher.getFilesRejected());
+            assertTrue(watcher.getLastFailure().startsWith(invalidFile.getFileName().toString()));
+            assertEquals(1, watcher.getBatchesApplied());
+
+            Files.delete(keptFile);
+            watcher.apply(List.of(keptFile));
+            assertNull(registry.findStoredByID(kept.getMessageID()));
+            assertFalse(store.contains(kept.getMessageID()));
+            assertEquals(1, watcher.getFilesRemoved());
+            assertEquals(2, watcher.getBatchesApplied());
+        }
+        store.close();
+    }
+
+    private static void awaitStoredCount(MessageRegistry registry, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (registry.storedCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, registry.storedCount());
+    }
+}
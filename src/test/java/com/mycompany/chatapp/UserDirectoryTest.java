@@ -0,0 +1,87 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserDirectoryTest {
+
+    @TempDir
+    Path dir;
+
+    public UserDirectoryTest() {
+    }
+
+    @Test
+    public void testRegisterAndAuthenticate() {
+        UserDirectory users = new UserDirectory(dir.resolve("users.dat"), 1000);
+        assertEquals(ValidationCode.OK, users.register("kyl_1", "Ch&&sec@ke99!", "+27838968976"));
+        assertEquals(ValidationCode.USERNAME_TAKEN, users.register("kyl_1", "Ch&&sec@ke99!", "+27838968976"));
+        assertEquals(ValidationCode.INVALID_USERNAME, users.register("kyle!!!!!!!", "Ch&&sec@ke99!", "+27838968976"));
+        assertEquals(ValidationCode.PASSWORD_TOO_SHORT, users.register("ky_2", "pass", "+27838968976"));
+        assertEquals(ValidationCode.INVALID_PHONE, users.register("ky_3", "Ch&&sec@ke99!", "08966553"));
+
+        assertTrue(users.authenticate("kyl_1", "Ch&&sec@ke99!"));
+        assertFalse(users.authenticate("kyl_1", "Ch&&sec@ke99"));
+        assertFalse(users.authenticate("nobody", "Ch&&sec@ke99!"));
+        assertFalse(users.authenticate(null, null));
+        assertEquals("+27838968976", users.getPhoneNumber("kyl_1"));
+        assertEquals(1, users.size());
+    }
+
+    @Test
+    public void testSavedDirectoryLoadsAndUpgradesWeakHashes() throws Exception {
+        Path file = dir.resolve("users.dat");
+        UserDirectory users = new UserDirectory(file, 1);
+        IntStream.range(0, 10_000).parallel().forEach(i ->
+                assertEquals(ValidationCode.OK, users.register("u_" + Integer.toString(i, 36), "Ch&&sec@ke99!", "+27838968976")));
+        users.save();
+        // Username, phone, iteration count, salt and hash take well under 100 bytes a user
+        assertTrue(Files.size(file) < 10_000 * 100);
+
+        UserDirectory stronger = new UserDirectory(file, 1000);
+        stronger.load();
+        assertEquals(10_000, stronger.size());
+        assertEquals(1, stronger.iterationsOf("u_7pr"));
+        assertTrue(stronger.authenticate("u_7pr", "Ch&&sec@ke99!"));
+        assertEquals(1000, stronger.iterationsOf("u_7pr"));
+        assertTrue(stronger.authenticate("u_7pr", "Ch&&sec@ke99!"));
+        assertFalse(stronger.authenticate("u_7pr", "wrong"));
+
+        Files.write(file, new byte[] {0, 0, 0, 1, 0, 0, 0, 5});
+        assertThrows(java.io.IOException.class, stronger::load);
+    }
+
+    @Test
+    public void testDamagedFileIsNeitherHalfLoadedNorOverwritten() throws Exception {
+        Path file = dir.resolve("users.dat");
+        UserDirectory users = new UserDirectory(file, 1);
+        for (int i = 0; i < 100; i++) {
+            users.register("u_" + i, "Ch&&sec@ke99!", "+27838968976");
+        }
+        users.save();
+        byte[] saved = Files.readAllBytes(file);
+        // Keep the first users intact and cut off the rest and the checksum
+        byte[] damaged = Arrays.copyOf(saved, saved.length / 2);
+        Files.write(file, damaged);
+
+        UserDirectory reader = new UserDirectory(file, 1);
+        reader.register("kyl_1", "Ch&&sec@ke99!", "+27838968976");
+        assertThrows(java.io.IOException.class, reader::load);
+        assertTrue(reader.isUnreadable());
+        assertEquals(1, reader.size());
+        assertTrue(reader.contains("kyl_1"));
+        assertThrows(java.io.IOException.class, reader::save);
+        assertArrayEquals(damaged, Files.readAllBytes(file));
+
+        Files.write(file, saved);
+        reader.load();
+        assertFalse(reader.isUnreadable());
+        assertEquals(100, reader.size());
+        reader.save();
+    }
+}
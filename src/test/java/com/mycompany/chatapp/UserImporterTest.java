@@ -0,0 +1,105 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserImporterTest {
+
+    @TempDir
+    Path dir;
+
+    public UserImporterTest() {
+    }
+
+    @Test
+    public void testRowsAreValidatedAndRejectionsReported() throws Exception {
+        UserDirectory users = new UserDirectory(dir.resolve("users.dat"), 1000);
+        users.register("old_1", "Ch&&sec@ke99!", "+27838968976");
+        String csv = "username,password,phone,name,surname\n"
+                + "kyl_1,Ch&&sec@ke99!,+27838968976,Kyle,Smith\n"
+                + "kyle!!!!!!!,Ch&&sec@ke99!,+27838968976,Kyle,Smith\n"
+                + "ky_2,pass,+27838968976,Kyle,Smith\n"
+                + "ky_3,Ch&&sec@ke99!,08966553,Kyle,Smith\n"
+                + "\n"
+                + "kyl_1,Ch&&sec@ke99!,+27838968976,Kyle,Again\n"
+                + "old_1,Ch&&sec@ke99!,+27838968976,Old,User\n"
+                + "ky_4,Ch&&sec@ke99!,+27838968976,,Smith\n"
+                + "ky_5,\"Pa,ss\"\"W0rd!\",+27838968976,\"Van der\nMerwe\",Jan\n"
+                + "\"a,_b\",Ch&&sec@ke99!,+27838968976\n";
+        StringWriter report = new StringWriter();
+        UserImporter.ImportResult result = new UserImporter(users, new ForkJoinPool(4))
+                .importUsers(new StringReader(csv), report);
+
+        assertEquals(9, result.getRowsRead());
+        assertEquals(2, result.getImported());
+        assertEquals(7, result.getRejected());
+        assertTrue(users.authenticate("kyl_1", "Ch&&sec@ke99!"));
+        assertTrue(users.authenticate("ky_5", "Pa,ss\"W0rd!"));
+        assertEquals(String.join("\r\n",
+                "line,username,reason",
+                "3,kyle!!!!!!!,INVALID_USERNAME",
+                "4,ky_2,PASSWORD_TOO_SHORT",
+                "5,ky_3,INVALID_PHONE",
+                "7,kyl_1,USERNAME_TAKEN",
+                "8,old_1,USERNAME_TAKEN",
+                "9,ky_4,MISSING_VALUE",
+                "12,\"a,_b\",MISSING_VALUE",
+                ""), report.toString());
+    }
+
+    @Test
+    public void testLargeFileIsImportedChunkByChunk() throws Exception {
+        int rows = UserImporter.CHUNK_ROWS * 3 + 7;
+        Path csv = dir.resolve("users.csv");
+        try (Writer out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                // Every tenth row repeats the previous username, sometimes across a chunk boundary
+                int n = i % 10 == 9 ? i - 1 : i;
+                out.write("u_" + Integer.toString(n, 36) + ",Ch&&sec@ke99!,+27838968976,Name" + i + ",Surname\n");
+            }
+        }
+        Path report = dir.resolve("rejected.csv");
+        UserDirectory users = new UserDirectory(dir.resolve("users.dat"), 1);
+        UserImporter.ImportResult result = new UserImporter(users).importFile(csv, report);
+
+        int duplicates = rows / 10;
+        assertEquals(rows, result.getRowsRead());
+        assertEquals(rows - duplicates, result.getImported());
+        assertEquals(rows - duplicates, users.size());
+        List<String> lines = Files.readAllLines(report, StandardCharsets.UTF_8);
+        assertEquals(duplicates + 1, lines.size());
+        assertEquals("10,u_8,USERNAME_TAKEN", lines.get(1));
+    }
+
+    @Test
+    public void testUnterminatedQuoteRejectsOnlyItsOwnLine() throws Exception {
+        UserDirectory users = new UserDirectory(dir.resolve("users.dat"), 1);
+        StringBuilder csv = new StringBuilder("ky_1,\"Ch&&sec@ke99!,+27838968976,Kyle,Smith\n");
+        // Far more text than any record may hold, so the reader gives up on the quote part way through
+        int rows = UserImporter.MAX_RECORD_CHARS / 20;
+        for (int i = 0; i < rows; i++) {
+            csv.append("u_").append(Integer.toString(i, 36)).append(",Ch&&sec@ke99!,+27838968976,Name,Surname\n");
+        }
+        csv.append("ky_2,Ch&&sec@ke99!,+27838968976,\"Van der\n");
+        StringWriter report = new StringWriter();
+        UserImporter.ImportResult result = new UserImporter(users).importUsers(new StringReader(csv.toString()), report);
+
+        assertEquals(rows + 2, result.getRowsRead());
+        assertEquals(rows, result.getImported());
+        assertEquals(rows, users.size());
+        assertEquals(String.join("\r\n",
+                "line,username,reason",
+                "1,ky_1,MALFORMED",
+                (rows + 2) + ",ky_2,MALFORMED",
+                ""), report.toString());
+    }
+}
@@ -0,0 +1,69 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValidatorsTest {
+
+    public ValidatorsTest() {
+    }
+
+    @Test
+    public void testCheckPhone() {
+        assertEquals(ValidationCode.OK, Validators.checkPhone("+27838968976"));
+        assertEquals(ValidationCode.INVALID_PHONE, Validators.checkPhone("08575975889"));
+        assertEquals(ValidationCode.INVALID_PHONE, Validators.checkPhone("+2783896897"));
+        assertEquals(ValidationCode.INVALID_PHONE, Validators.checkPhone("+27838968976 "));
+        assertEquals(ValidationCode.INVALID_PHONE, Validators.checkPhone("+2783896897a"));
+        assertEquals(ValidationCode.MISSING_VALUE, Validators.checkPhone(null));
+    }
+
+    @Test
+    public void testCheckPassword() {
+        assertEquals(ValidationCode.OK, Validators.checkPassword("Ch&&sec@ke99!"));
+        assertEquals(ValidationCode.PASSWORD_TOO_SHORT, Validators.checkPassword("Ch&9"));
+        assertEquals(ValidationCode.PASSWORD_MISSING_UPPERCASE, Validators.checkPassword("password1!"));
+        assertEquals(ValidationCode.PASSWORD_MISSING_DIGIT, Validators.checkPassword("Password!"));
+        assertEquals(ValidationCode.PASSWORD_MISSING_SPECIAL, Validators.checkPassword("Password1"));
+        assertEquals(ValidationCode.PASSWORD_HAS_LINE_BREAK, Validators.checkPassword("Ch&&sec\n@ke99!"));
+    }
+
+    @Test
+    public void testMatchesTheRegexRules() {
+        Random random = new Random(42);
+        String alphabet = "aZ9_!+27 \n-é";
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(14);
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String s = sb.toString();
+            boolean password = s.length() >= 8 && s.matches(".*[A-Z].*") && s.matches(".*[0-9].*") && s.matches(".*[^a-zA-Z0-9].*");
+            assertEquals(password, Validators.checkPassword(s).isValid(), s);
+            assertEquals(s.contains("_") && s.length() <= 5, Validators.checkUsername(s).isValid(), s);
+            String phone = "+27" + s;
+            assertEquals(phone.matches("\\+27\\d{9}"), Validators.checkPhone(phone).isValid(), phone);
+        }
+    }
+
+    @Test
+    public void testValidateAllReportsFailuresInOrder() {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            messages.add(new Message(i, "+27834557896", "Message " + i));
+        }
+        messages.set(10, new Message(10, "0838884567", "Bad number"));
+        messages.set(500, new Message(500, "+27834557896", "x".repeat(251)));
+
+        List<Validators.Failure> failures = Validators.validateAll(messages);
+        assertEquals(2, failures.size());
+        assertEquals(10, failures.get(0).getIndex());
+        assertEquals(ValidationCode.INVALID_PHONE, failures.get(0).getCode());
+        assertEquals(500, failures.get(1).getIndex());
+        assertEquals(ValidationCode.MESSAGE_TOO_LONG, failures.get(1).getCode());
+    }
+}
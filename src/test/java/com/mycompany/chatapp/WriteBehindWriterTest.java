@@ -0,0 +1,104 @@
+package com.mycompany.chatapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBehindWriterTest {
+
+    @TempDir
+    Path dir;
+
+    public WriteBehindWriterTest() {
+    }
+
+    @Test
+    public void testGroupCommitWritesEveryMessage() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir, 4096);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (WriteBehindWriter writer = new WriteBehindWriter(store, WriteBehindWriter.Durability.BATCH)) {
+            for (int i = 0; i < 500; i++) {
+                futures.add(writer.write(new Message(i, "+27834557896", "Stored message " + i)));
+            }
+            writer.flush().join();
+            for (CompletableFuture<Void> future : futures) {
+                assertTrue(future.isDone());
+                assertFalse(future.isCompletedExceptionally());
+            }
+        }
+        store.close();
+
+        assertEquals(500, new MessageLogStore(dir, 4096).loadAll().size());
+    }
+
+    @Test
+    public void testPerRecordDurabilityAndClose() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir);
+        WriteBehindWriter writer = new WriteBehindWriter(store, WriteBehindWriter.Durability.RECORD);
+        Message m = new Message(1, "+27838884567", "It is dinner time !");
+        writer.write(m).join();
+        writer.close();
+
+        assertEquals(m.getMessage(), store.read(m.getMessageID()).getMessage());
+        assertTrue(writer.write(m).isCompletedExceptionally());
+    }
+
+    @Test
+    public void testPerRecordFailureOnlyFailsThatRecord() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (WriteBehindWriter writer = new WriteBehindWriter(store, WriteBehindWriter.Durability.RECORD)) {
+            for (int i = 0; i < 201; i++) {
+                // A message without an ID cannot be encoded, so its append fails
+                Message m = i == 100 ? new Message(null, i, "+27834557896", "No ID", "00:100:NOID")
+                        : new Message(i, "+27834557896", "Stored message " + i);
+                futures.add(writer.write(m));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((done, error) -> null).join();
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i == 100, futures.get(i).isCompletedExceptionally(), "record " + i);
+        }
+        assertEquals(200, store.size());
+        store.close();
+    }
+
+    @Test
+    public void testCloseWhileWritingLeavesTheStoreUsable() throws Exception {
+        MessageLogStore store = new MessageLogStore(dir);
+        WriteBehindWriter writer = new WriteBehindWriter(store, WriteBehindWriter.Durability.BATCH, 16, 64);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                CompletableFuture<Void> future = writer.write(new Message(i, "+27834557896", "Stored message " + i));
+                synchronized (futures) {
+                    futures.add(future);
+                }
+            }
+        });
+        producer.start();
+        Thread.sleep(5);
+        writer.close();
+        producer.join();
+
+        // Every write either made it to disk or was turned away; none is left hanging
+        int written = 0;
+        synchronized (futures) {
+            for (CompletableFuture<Void> future : futures) {
+                assertTrue(future.isDone());
+                if (!future.isCompletedExceptionally()) {
+                    written++;
+                }
+            }
+        }
+        assertEquals(written, store.size());
+        Message after = new Message(1, "+27838884567", "Still writable");
+        store.append(after);
+        assertEquals("Still writable", store.read(after.getMessageID()).getMessage());
+        store.close();
+    }
+}